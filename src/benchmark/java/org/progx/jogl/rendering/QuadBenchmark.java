@@ -0,0 +1,131 @@
+package org.progx.jogl.rendering;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLProfile;
+
+/**
+ * Compares the time taken to draw reflected quads from vertex buffers and in
+ * immediate mode, in an offscreen drawable. Both paths draw the same quads
+ * with the same textures; only the way vertices reach GL differs.
+ * <p>
+ * Usage: <code>QuadBenchmark [quads] [frames]</code>, or
+ * <code>gradle quadBenchmark</code>. It lives in the benchmark source set
+ * and is not part of the application jar.
+ */
+public class QuadBenchmark implements GLEventListener {
+    private static final int SIZE = 512;
+
+    private final ReflectedQuad[] quads;
+    private final int frames;
+
+    private boolean immediateMode;
+    private long elapsed;
+
+    private QuadBenchmark(int count, int frames) {
+        this.frames = frames;
+
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setPaint(new GradientPaint(0, 0, Color.WHITE, 256, 256, Color.BLUE));
+        g2.fillRect(0, 0, 256, 256);
+        g2.dispose();
+
+        quads = new ReflectedQuad[count];
+        for (int i = 0; i < count; i++) {
+            quads[i] = new ReflectedQuad(0.0f, 0.0f, 0.0f, 1.0f, 1.0f, image);
+        }
+    }
+
+    public void init(GLAutoDrawable drawable) {
+        GL2 gl = drawable.getGL().getGL2();
+        for (Quad quad: quads) {
+            quad.init(gl);
+        }
+    }
+
+    public void display(GLAutoDrawable drawable) {
+        GL2 gl = drawable.getGL().getGL2();
+        for (Quad quad: quads) {
+            quad.setImmediateMode(immediateMode);
+        }
+
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glLoadIdentity();
+        gl.glOrtho(-1.0, 1.0, -1.0, 1.0, -1.0, 1.0);
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+        gl.glLoadIdentity();
+
+        // the first frame creates the buffers and is not measured
+        renderFrame(gl);
+        gl.glFinish();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            renderFrame(gl);
+        }
+        gl.glFinish();
+        elapsed = System.nanoTime() - start;
+    }
+
+    private void renderFrame(GL2 gl) {
+        gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+        for (Quad quad: quads) {
+            quad.render(gl);
+        }
+    }
+
+    public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+    }
+
+    public void dispose(GLAutoDrawable drawable) {
+        GL2 gl = drawable.getGL().getGL2();
+        for (Quad quad: quads) {
+            quad.dispose(gl);
+        }
+    }
+
+    private long run(GLAutoDrawable drawable, boolean immediateMode) {
+        this.immediateMode = immediateMode;
+        drawable.display();
+        return elapsed;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        GLProfile profile = GLProfile.get(GLProfile.GL2);
+        GLCapabilities caps = new GLCapabilities(profile);
+        GLAutoDrawable drawable = GLDrawableFactory.getFactory(profile)
+            .createOffscreenAutoDrawable(null, caps, null, SIZE, SIZE);
+
+        QuadBenchmark benchmark = new QuadBenchmark(count, frames);
+        drawable.addGLEventListener(benchmark);
+
+        try {
+            // alternates both paths to even out warm up effects
+            long buffers = 0;
+            long immediate = 0;
+            for (int i = 0; i < 3; i++) {
+                buffers = benchmark.run(drawable, false);
+                immediate = benchmark.run(drawable, true);
+            }
+
+            System.out.printf("%d quads, %d frames%n", count, frames);
+            System.out.printf("vertex buffers  %8.3f ms/frame%n", buffers / 1e6 / frames);
+            System.out.printf("immediate mode  %8.3f ms/frame%n", immediate / 1e6 / frames);
+        } finally {
+            drawable.destroy();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.progx.jogl;
+
+/**
+ * The ways a scene can be anti-aliased.
+ */
+public enum AntiAliasing {
+    /**
+     * Draws the scene once, aliased.
+     */
+    NONE,
+    /**
+     * Draws the scene once in a multisample framebuffer. The cost barely
+     * depends on the number of samples, which is chosen when the panel is
+     * created.
+     */
+    MULTISAMPLE,
+    /**
+     * Draws the scene once per jitter sample and averages the results in
+     * the accumulation buffer. The cost grows with the number of samples,
+     * and the accumulation buffer hides whatever is drawn behind the scene.
+     */
+    ACCUMULATION,
+    /**
+     * Draws the scene once per frame, and while nothing moves averages one
+     * more jitter sample per frame in the accumulation buffer, so that still
+     * images refine over time at no extra cost during animations.
+     */
+    PROGRESSIVE;
+
+    /**
+     * Returns the mode named by a property value: <code>accum</code> selects
+     * the accumulation buffer and <code>progressive</code> the progressive
+     * accumulation. Null, <code>false</code>, <code>off</code>,
+     * <code>none</code> and <code>0</code> turn anti-aliasing off, and any
+     * other value, even empty, selects multisampling.
+     */
+    public static AntiAliasing fromProperty(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        value = value.trim();
+        if ("false".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value) ||
+            "none".equalsIgnoreCase(value) || "0".equals(value)) {
+            return NONE;
+        } else if ("accum".equalsIgnoreCase(value)) {
+            return ACCUMULATION;
+        } else if ("progressive".equalsIgnoreCase(value)) {
+            return PROGRESSIVE;
+        }
+        return MULTISAMPLE;
+    }
+}
@@ -0,0 +1,153 @@
+package org.progx.jogl;
+
+/**
+ * The viewing transform of a scene, computed on the CPU. The camera builds
+ * the same matrix as <code>gluLookAt</code>, optionally followed by a
+ * translation of the scene, and keeps its basis and its position in scene
+ * space so that renderables facing the camera never have to read the
+ * modelview matrix back from GL.
+ * <p>
+ * The camera is set once per frame, typically on the render thread, before
+ * the scene is drawn.
+ */
+public class Camera {
+    private final float[] view = new float[16];
+
+    // position in scene space
+    private float x, y, z;
+    // basis: right, up, and backward, the opposite of the viewing direction
+    private float rightX, rightY, rightZ;
+    private float upX, upY, upZ;
+    private float backX, backY, backZ;
+
+    public Camera() {
+        lookAt(0.0f, 0.0f, 0.0f,
+               0.0f, 0.0f, -1.0f,
+               0.0f, 1.0f, 0.0f);
+    }
+
+    /**
+     * Places the camera at <code>eye</code>, looking at <code>center</code>,
+     * like <code>gluLookAt</code>.
+     */
+    public void lookAt(float eyeX, float eyeY, float eyeZ,
+                       float centerX, float centerY, float centerZ,
+                       float upX, float upY, float upZ) {
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        float length = (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx /= length;
+        fy /= length;
+        fz /= length;
+
+        // right = forward x up
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        length = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx /= length;
+        sy /= length;
+        sz /= length;
+
+        rightX = sx;
+        rightY = sy;
+        rightZ = sz;
+        // up = right x forward
+        this.upX = sy * fz - sz * fy;
+        this.upY = sz * fx - sx * fz;
+        this.upZ = sx * fy - sy * fx;
+        backX = -fx;
+        backY = -fy;
+        backZ = -fz;
+
+        view[0] = rightX;
+        view[4] = rightY;
+        view[8] = rightZ;
+        view[1] = this.upX;
+        view[5] = this.upY;
+        view[9] = this.upZ;
+        view[2] = backX;
+        view[6] = backY;
+        view[10] = backZ;
+        view[3] = view[7] = view[11] = 0.0f;
+        view[12] = -(rightX * eyeX + rightY * eyeY + rightZ * eyeZ);
+        view[13] = -(this.upX * eyeX + this.upY * eyeY + this.upZ * eyeZ);
+        view[14] = -(backX * eyeX + backY * eyeY + backZ * eyeZ);
+        view[15] = 1.0f;
+
+        x = eyeX;
+        y = eyeY;
+        z = eyeZ;
+    }
+
+    /**
+     * Translates the scene, like <code>glTranslatef</code> applied after the
+     * look-at transform.
+     */
+    public void translate(float tx, float ty, float tz) {
+        view[12] += view[0] * tx + view[4] * ty + view[8] * tz;
+        view[13] += view[1] * tx + view[5] * ty + view[9] * tz;
+        view[14] += view[2] * tx + view[6] * ty + view[10] * tz;
+
+        x -= tx;
+        y -= ty;
+        z -= tz;
+    }
+
+    /**
+     * Returns the view matrix, in column-major order. The returned array must
+     * not be modified.
+     */
+    public float[] getViewMatrix() {
+        return view;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getZ() {
+        return z;
+    }
+
+    public float getRightX() {
+        return rightX;
+    }
+
+    public float getRightY() {
+        return rightY;
+    }
+
+    public float getRightZ() {
+        return rightZ;
+    }
+
+    public float getUpX() {
+        return upX;
+    }
+
+    public float getUpY() {
+        return upY;
+    }
+
+    public float getUpZ() {
+        return upZ;
+    }
+
+    public float getBackX() {
+        return backX;
+    }
+
+    public float getBackY() {
+        return backY;
+    }
+
+    public float getBackZ() {
+        return backZ;
+    }
+}
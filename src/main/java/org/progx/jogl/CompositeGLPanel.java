@@ -1,27 +1,68 @@
 package org.progx.jogl;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.glu.GLU;
 import com.jogamp.opengl.awt.GLJPanel;
 
 /**
+ * A GL panel drawing a 3D scene between a Java2D background and foreground.
+ * The background and the scene are cached in an image, and only rendered
+ * again once {@link #invalidateScene()} is called or the panel is resized;
+ * other repaints composite the cached image and draw the foreground. Setting
+ * <code>twinkle.render.cached</code> to false renders every layer on every
+ * repaint.
+ *
  * @author campbelc
  */
 public class CompositeGLPanel extends GLJPanel implements GLEventListener {
     private static GLU glu = new GLU();
 
+    // when set, the background and the 3D scene are rendered into an image
+    // that is only refreshed after invalidateScene()
+    private static final boolean CACHED =
+        Boolean.parseBoolean(System.getProperty("twinkle.render.cached", "true"));
+
     private boolean hasDepth;
+    private boolean multisampling;
+    private BufferedImage layer;
+    private volatile boolean sceneDirty = true;
 
     public CompositeGLPanel(boolean isOpaque, boolean hasDepth) {
-        super(getCaps(isOpaque));
+        this(isOpaque, hasDepth, 0);
+    }
+
+    /**
+     * Creates a panel whose framebuffer has the given number of samples per
+     * pixel, when above 1 and supported. Multisampling is then enabled until
+     * turned off with {@link #setMultisampling(boolean)}.
+     */
+    public CompositeGLPanel(boolean isOpaque, boolean hasDepth, int samples) {
+        this(isOpaque, hasDepth, samples, false);
+    }
+
+    /**
+     * Creates a panel with sample buffers, as above, and with an
+     * accumulation buffer when <code>accumulation</code> is true. Whether the
+     * accumulation buffer is granted depends on the drawable backing the
+     * panel.
+     */
+    public CompositeGLPanel(boolean isOpaque, boolean hasDepth, int samples,
+                            boolean accumulation) {
+        super(getCaps(isOpaque, samples, accumulation));
         setOpaque(isOpaque);
         this.hasDepth = hasDepth;
+        this.multisampling = samples > 1;
         addGLEventListener(this);
     }
 
-    private static GLCapabilities getCaps(boolean opaque) {
+    private static GLCapabilities getCaps(boolean opaque, int samples,
+                                          boolean accumulation) {
         //getting the capabilities object of GL2 profile
         final GLProfile profile = GLProfile.get(GLProfile.GL2);
         GLCapabilities caps = new GLCapabilities(profile);
@@ -29,14 +70,98 @@ public class CompositeGLPanel extends GLJPanel implements GLEventListener {
         if (!opaque) {
             caps.setAlphaBits(8);
         }
+        if (samples > 1) {
+            // resolved once per frame, whatever the number of samples
+            caps.setSampleBuffers(true);
+            caps.setNumSamples(samples);
+        }
+        if (accumulation) {
+            // 16 bits keep the average of many samples from banding
+            caps.setAccumRedBits(16);
+            caps.setAccumGreenBits(16);
+            caps.setAccumBlueBits(16);
+            caps.setAccumAlphaBits(opaque ? 0 : 16);
+        }
 
         return caps;
     }
 
+    /**
+     * Returns true when the framebuffer has sample buffers, which may not be
+     * known before the panel is displayed.
+     */
+    public boolean isMultisampleAvailable() {
+        GLCapabilitiesImmutable caps = getChosenGLCapabilities();
+        return caps != null && caps.getSampleBuffers();
+    }
+
+    public boolean isMultisampling() {
+        return multisampling;
+    }
+
+    /**
+     * Turns multisampling on or off from one frame to the next. This has no
+     * effect unless the panel was created with sample buffers.
+     */
+    public void setMultisampling(boolean multisampling) {
+        this.multisampling = multisampling;
+        invalidateScene();
+    }
+
+    /**
+     * Marks the background and the 3D scene as changed and schedules a
+     * repaint. Plain repaints only draw the cached scene and the foreground,
+     * so this must be called whenever what the scene or the background
+     * render changes. It can be called from any thread.
+     */
+    public void invalidateScene() {
+        sceneDirty = true;
+        repaint();
+    }
+
     @Override
     public void paintComponent(Graphics g) {
-        render2DBackground(g);
-        super.paintComponent(g);
+        if (!CACHED) {
+            render2DBackground(g);
+            super.paintComponent(g);
+            render2DForeground(g);
+            return;
+        }
+
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            if (layer != null) {
+                layer.flush();
+            }
+            layer = getGraphicsConfiguration().createCompatibleImage(width, height,
+                isOpaque() ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+            sceneDirty = true;
+        }
+
+        if (sceneDirty) {
+            // cleared first, so that the scene can invalidate itself while
+            // rendering to schedule another frame
+            sceneDirty = false;
+            Graphics2D g2 = layer.createGraphics();
+            try {
+                if (!isOpaque()) {
+                    g2.setComposite(AlphaComposite.Clear);
+                    g2.fillRect(0, 0, width, height);
+                    g2.setComposite(AlphaComposite.SrcOver);
+                }
+                render2DBackground(g2);
+                super.paintComponent(g2);
+            } finally {
+                g2.dispose();
+            }
+        }
+
+        g.drawImage(layer, 0, 0, null);
         render2DForeground(g);
     }
 
@@ -71,6 +196,13 @@ public class CompositeGLPanel extends GLJPanel implements GLEventListener {
         if (clearBits != 0) {
             gl.glClear(clearBits);
         }
+        if (isMultisampleAvailable()) {
+            if (multisampling) {
+                gl.glEnable(GL.GL_MULTISAMPLE);
+            } else {
+                gl.glDisable(GL.GL_MULTISAMPLE);
+            }
+        }
         render3DScene(gl, glu);
     }
 
@@ -79,18 +211,16 @@ public class CompositeGLPanel extends GLJPanel implements GLEventListener {
                         int x, int y, int width, int height) {
         GL2 gl = drawable.getGL().getGL2();
 
-        gl.glViewport(0, 0, width, height);
-        gl.glMatrixMode(GL2.GL_PROJECTION);
-        gl.glLoadIdentity();
+        // tracked on the CPU so that rendering never reads matrices back
+        MatrixState state = MatrixState.get(gl);
+        state.setViewport(gl, 0, 0, width, height);
         if (hasDepth) {
             double aspectRatio = (double) width / (double) height;
-            glu.gluPerspective(45.0, aspectRatio, 1.0, 400.0);
+            state.setPerspective(gl, 45.0, aspectRatio, 1.0, 400.0);
         } else {
-            gl.glOrtho(0.0, width, height, 0.0, -100.0, 100.0);
+            state.setOrtho(gl, 0.0, width, height, 0.0, -100.0, 100.0);
         }
-
-        gl.glMatrixMode(GL2.GL_MODELVIEW);
-        gl.glLoadIdentity();
+        state.loadIdentity(gl);
     }
 
     @Override
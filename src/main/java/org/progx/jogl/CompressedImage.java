@@ -0,0 +1,41 @@
+package org.progx.jogl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An image compressed to DXT1 blocks, optionally followed by all its mipmap
+ * levels down to 1x1, ready to be uploaded to GL.
+ */
+public class CompressedImage {
+    private final int width;
+    private final int height;
+    private final boolean mipmapped;
+    private final ByteBuffer blocks;
+
+    /**
+     * Creates a compressed image. <code>blocks</code> must be a direct buffer
+     * whose remaining bytes are the blocks of every level.
+     */
+    public CompressedImage(int width, int height, boolean mipmapped, ByteBuffer blocks) {
+        this.width = width;
+        this.height = height;
+        this.mipmapped = mipmapped;
+        this.blocks = blocks;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isMipmapped() {
+        return mipmapped;
+    }
+
+    public ByteBuffer getBlocks() {
+        return blocks;
+    }
+}
@@ -2,7 +2,6 @@ package org.progx.jogl;
 import java.util.HashMap;
 
 import com.jogamp.opengl.GL2;
-import org.jogamp.vecmath.Matrix4f;
 import org.jogamp.vecmath.Point2d;
 import org.jogamp.vecmath.Point3f;
 import org.jogamp.vecmath.Vector3f;
@@ -48,24 +47,31 @@ public class GLUtilities {
         right.cross(camUp, look);
         up.cross(look, right);
 
-        gl.glMultMatrixf(new float[] { right.x, right.y, right.z, 0.0f,
-                                       up.x, up.y, up.z, 0.0f,
-                                       look.x, look.y, look.z, 0.0f,
-                                       pos.x, pos.y, pos.z, 1 }, 0);
+        MatrixState.get(gl).multiply(gl, new float[] { right.x, right.y, right.z, 0.0f,
+                                                       up.x, up.y, up.z, 0.0f,
+                                                       look.x, look.y, look.z, 0.0f,
+                                                       pos.x, pos.y, pos.z, 1 });
         
         item.render(gl);
     }
 
     public static void getCameraVectors(GL2 gl, Vector3f camPos, Vector3f camUp) {
-        float[] matrix = new float[16];
-        gl.glGetFloatv(GL2.GL_MODELVIEW_MATRIX, matrix, 0);
-    
-        camPos.set(new float[] { -matrix[12], -matrix[13], -matrix[14] });
-        camUp.set(new float[] { matrix[1], matrix[5], matrix[9] });
-        
-        matrix[12] = matrix[13] = matrix[14] = 0;
-        Matrix4f view = new Matrix4f(matrix);
-        view.transform(camPos);
+        getCameraVectors(MatrixState.get(gl).getModelView(), camPos, camUp);
+    }
+
+    /**
+     * Computes the position and the up vector of the camera, in the space
+     * in which the given modelview matrix applies.
+     */
+    public static void getCameraVectors(float[] matrix, Vector3f camPos, Vector3f camUp) {
+        // the rotation is orthonormal, its inverse is its transpose
+        float x = -matrix[12];
+        float y = -matrix[13];
+        float z = -matrix[14];
+        camPos.set(matrix[0] * x + matrix[1] * y + matrix[2] * z,
+                   matrix[4] * x + matrix[5] * y + matrix[6] * z,
+                   matrix[8] * x + matrix[9] * y + matrix[10] * z);
+        camUp.set(matrix[1], matrix[5], matrix[9]);
     }
 
     public static void renderAntiAliased(GL2 gl, Renderable scene, int aa) {
@@ -74,19 +80,18 @@ public class GLUtilities {
             return;
         }
         
-        int[] viewport = new int[4];
-        gl.glGetIntegerv(GL2.GL_VIEWPORT, viewport, 0);
+        MatrixState state = MatrixState.get(gl);
         gl.glClear(GL2.GL_ACCUM_BUFFER_BIT);
         
         Point2d[] samples = GLUtilities.getJitterSamples(aa);
 
         for (int jitter = 0; jitter < samples.length; jitter++) {
            gl.glClear(GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT);
-           GLUtilities.setPerspective(gl,
-                                      45.0, (double) viewport[2] / (double) viewport[3], 1.0, 250.0,
-                                      samples[jitter].x, samples[jitter].y,
-                                      0.0, 0.0, 1.0);
+           // jitters the projection set by the panel instead of replacing it
+           state.pushProjection();
+           state.jitter(gl, samples[jitter].x, samples[jitter].y);
            scene.render(gl);
+           state.popProjection(gl);
            gl.glAccum(GL2.GL_ACCUM, 1.0f / samples.length);
         }
 
@@ -98,21 +103,17 @@ public class GLUtilities {
                                   double left, double right, double bottom, 
                                   double top, double near, double far, double pixdx, 
                                   double pixdy, double eyedx, double eyedy, double focus) {
-        int[] viewport = new int[4];
-        gl.glGetIntegerv(GL2.GL_VIEWPORT, viewport, 0);
+        MatrixState state = MatrixState.get(gl);
         
         double xwsize = right - left;
         double ywsize = top - bottom;
         
-        double dx = -(pixdx * xwsize / (double) viewport[2] + eyedx * near / focus);
-        double dy = -(pixdy * ywsize / (double) viewport[3] + eyedy * near / focus);
+        double dx = -(pixdx * xwsize / (double) state.getViewportWidth() + eyedx * near / focus);
+        double dy = -(pixdy * ywsize / (double) state.getViewportHeight() + eyedy * near / focus);
         
-        gl.glMatrixMode(GL2.GL_PROJECTION);
-        gl.glLoadIdentity();
-        gl.glFrustum(left + dx, right + dx, bottom + dy, top + dy, near, far);
-        gl.glMatrixMode(GL2.GL_MODELVIEW);
-        gl.glLoadIdentity();
-        gl.glTranslatef((float) -eyedx, (float) -eyedy, 0.0f); 
+        state.setFrustum(gl, left + dx, right + dx, bottom + dy, top + dy, near, far);
+        state.loadIdentity(gl);
+        state.translate(gl, (float) -eyedx, (float) -eyedy, 0.0f);
     }
 
     public static void setPerspective(GL2 gl,
@@ -0,0 +1,265 @@
+package org.progx.jogl;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
+
+/**
+ * The viewport, projection and modelview matrices of a GL context, tracked
+ * on the CPU. Every change goes through this class, which computes the new
+ * matrix and loads it with <code>glLoadMatrixf</code>, so the current state
+ * can always be read back without <code>glGet</code> calls, which stall the
+ * pipeline. Code drawing in a context must not change its matrices directly
+ * once it uses this class.
+ * <p>
+ * The GL matrix mode is left to <code>GL_MODELVIEW</code>. All matrices are
+ * in column-major order, like GL's.
+ */
+public class MatrixState {
+    // per context, created on first use
+    private static final Map<GLContext, MatrixState> states =
+        new WeakHashMap<GLContext, MatrixState>();
+
+    private final int[] viewport = new int[4];
+    private final Stack projection = new Stack(2);
+    private final Stack modelView = new Stack(32);
+    private final float[] scratch = new float[16];
+
+    public MatrixState() {
+    }
+
+    /**
+     * Returns the state of the current context of <code>gl</code>.
+     */
+    public static MatrixState get(GL2 gl) {
+        GLContext context = gl.getContext();
+        synchronized (states) {
+            MatrixState state = states.get(context);
+            if (state == null) {
+                state = new MatrixState();
+                states.put(context, state);
+            }
+            return state;
+        }
+    }
+
+    public void setViewport(GL2 gl, int x, int y, int width, int height) {
+        viewport[0] = x;
+        viewport[1] = y;
+        viewport[2] = width;
+        viewport[3] = height;
+        gl.glViewport(x, y, width, height);
+    }
+
+    public int getViewportX() {
+        return viewport[0];
+    }
+
+    public int getViewportY() {
+        return viewport[1];
+    }
+
+    public int getViewportWidth() {
+        return viewport[2];
+    }
+
+    public int getViewportHeight() {
+        return viewport[3];
+    }
+
+    /**
+     * Returns the projection matrix. The returned array changes with the
+     * state and must not be modified.
+     */
+    public float[] getProjection() {
+        return projection.top;
+    }
+
+    /**
+     * Returns the modelview matrix. The returned array changes with the
+     * state and must not be modified.
+     */
+    public float[] getModelView() {
+        return modelView.top;
+    }
+
+    /**
+     * Sets the projection like <code>glFrustum</code> on an identity matrix.
+     */
+    public void setFrustum(GL2 gl, double left, double right, double bottom,
+                           double top, double near, double far) {
+        frustum(projection.top, left, right, bottom, top, near, far);
+        loadProjection(gl);
+    }
+
+    /**
+     * Sets the projection like <code>gluPerspective</code>.
+     */
+    public void setPerspective(GL2 gl, double fovy, double aspect,
+                               double near, double far) {
+        double top = near * Math.tan(Math.toRadians(fovy) / 2.0);
+        double right = top * aspect;
+        setFrustum(gl, -right, right, -top, top, near, far);
+    }
+
+    /**
+     * Sets the projection like <code>glOrtho</code> on an identity matrix.
+     */
+    public void setOrtho(GL2 gl, double left, double right, double bottom,
+                         double top, double near, double far) {
+        ortho(projection.top, left, right, bottom, top, near, far);
+        loadProjection(gl);
+    }
+
+    /**
+     * Shifts the projection by a fraction of a pixel, in window coordinates,
+     * to render the jitter samples of an anti-aliased image.
+     */
+    public void jitter(GL2 gl, double pixelX, double pixelY) {
+        // a translation in normalized device coordinates, applied after the
+        // projection, scaled by w so that the shift does not depend on depth
+        float dx = (float) (2.0 * pixelX / viewport[2]);
+        float dy = (float) (2.0 * pixelY / viewport[3]);
+        float[] m = projection.top;
+        for (int column = 0; column < 16; column += 4) {
+            m[column] += dx * m[column + 3];
+            m[column + 1] += dy * m[column + 3];
+        }
+        loadProjection(gl);
+    }
+
+    public void pushProjection() {
+        projection.push();
+    }
+
+    public void popProjection(GL2 gl) {
+        projection.pop();
+        loadProjection(gl);
+    }
+
+    public void loadIdentity(GL2 gl) {
+        identity(modelView.top);
+        gl.glLoadMatrixf(modelView.top, 0);
+    }
+
+    /**
+     * Multiplies the modelview matrix by <code>matrix</code>, like
+     * <code>glMultMatrixf</code>.
+     */
+    public void multiply(GL2 gl, float[] matrix) {
+        multiply(modelView.top, matrix, scratch);
+        System.arraycopy(scratch, 0, modelView.top, 0, 16);
+        gl.glLoadMatrixf(modelView.top, 0);
+    }
+
+    public void translate(GL2 gl, float x, float y, float z) {
+        float[] m = modelView.top;
+        m[12] += m[0] * x + m[4] * y + m[8] * z;
+        m[13] += m[1] * x + m[5] * y + m[9] * z;
+        m[14] += m[2] * x + m[6] * y + m[10] * z;
+        m[15] += m[3] * x + m[7] * y + m[11] * z;
+        gl.glLoadMatrixf(m, 0);
+    }
+
+    /**
+     * Saves the modelview matrix. Unlike <code>glPushMatrix</code>, this
+     * does not touch GL.
+     */
+    public void push() {
+        modelView.push();
+    }
+
+    public void pop(GL2 gl) {
+        modelView.pop();
+        gl.glLoadMatrixf(modelView.top, 0);
+    }
+
+    private void loadProjection(GL2 gl) {
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glLoadMatrixf(projection.top, 0);
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+    }
+
+    public static void identity(float[] m) {
+        for (int i = 0; i < 16; i++) {
+            m[i] = i % 5 == 0 ? 1.0f : 0.0f;
+        }
+    }
+
+    /**
+     * Computes <code>a.b</code> into <code>result</code>, which must be
+     * neither of the operands.
+     */
+    public static void multiply(float[] a, float[] b, float[] result) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                result[column * 4 + row] = a[row] * b[column * 4] +
+                                           a[4 + row] * b[column * 4 + 1] +
+                                           a[8 + row] * b[column * 4 + 2] +
+                                           a[12 + row] * b[column * 4 + 3];
+            }
+        }
+    }
+
+    /**
+     * Computes the matrix built by <code>glFrustum</code>.
+     */
+    public static void frustum(float[] m, double left, double right,
+                               double bottom, double top, double near, double far) {
+        identity(m);
+        m[0] = (float) (2.0 * near / (right - left));
+        m[5] = (float) (2.0 * near / (top - bottom));
+        m[8] = (float) ((right + left) / (right - left));
+        m[9] = (float) ((top + bottom) / (top - bottom));
+        m[10] = (float) (-(far + near) / (far - near));
+        m[11] = -1.0f;
+        m[14] = (float) (-2.0 * far * near / (far - near));
+        m[15] = 0.0f;
+    }
+
+    /**
+     * Computes the matrix built by <code>glOrtho</code>.
+     */
+    public static void ortho(float[] m, double left, double right,
+                             double bottom, double top, double near, double far) {
+        identity(m);
+        m[0] = (float) (2.0 / (right - left));
+        m[5] = (float) (2.0 / (top - bottom));
+        m[10] = (float) (-2.0 / (far - near));
+        m[12] = (float) (-(right + left) / (right - left));
+        m[13] = (float) (-(top + bottom) / (top - bottom));
+        m[14] = (float) (-(far + near) / (far - near));
+    }
+
+    // a matrix and the saved copies below it, grown on demand
+    private static final class Stack {
+        private final float[] top = new float[16];
+        private float[] saved;
+        private int depth = 0;
+
+        private Stack(int capacity) {
+            saved = new float[capacity * 16];
+            identity(top);
+        }
+
+        private void push() {
+            if ((depth + 1) * 16 > saved.length) {
+                float[] grown = new float[saved.length * 2];
+                System.arraycopy(saved, 0, grown, 0, saved.length);
+                saved = grown;
+            }
+            System.arraycopy(top, 0, saved, depth * 16, 16);
+            depth++;
+        }
+
+        private void pop() {
+            if (depth == 0) {
+                throw new IllegalStateException("Matrix stack underflow");
+            }
+            depth--;
+            System.arraycopy(saved, depth * 16, top, 0, 16);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.progx.jogl;
+
+import com.jogamp.opengl.GL2;
+import org.jogamp.vecmath.Point2d;
+
+import org.progx.jogl.rendering.Renderable;
+
+/**
+ * Anti-aliases a scene over several frames. While the scene is idle, every
+ * frame renders one more jitter sample and folds it into a running average
+ * kept in the accumulation buffer; once all the samples are averaged, frames
+ * only return the accumulated image. As soon as the scene changes, frames
+ * render a single aliased sample and the average starts over, so animations
+ * cost no more than without anti-aliasing.
+ * <p>
+ * The matrices of the context must be tracked by {@link MatrixState}. When
+ * the context has no accumulation buffer, every frame renders a single
+ * aliased sample.
+ */
+public class ProgressiveAccumulator {
+    private final Point2d[] samples;
+    private int sample = 0;
+    private int width = -1;
+    private int height = -1;
+
+    /**
+     * Creates an accumulator averaging up to the given number of samples,
+     * rounded to the closest jitter table.
+     */
+    public ProgressiveAccumulator(int samples) {
+        this.samples = GLUtilities.getJitterSamples(samples);
+    }
+
+    /**
+     * Starts the average over on the next idle frame.
+     */
+    public void reset() {
+        sample = 0;
+    }
+
+    public int getSampleCount() {
+        return samples.length;
+    }
+
+    /**
+     * Returns the number of samples in the current average.
+     */
+    public int getAccumulatedCount() {
+        return sample;
+    }
+
+    public boolean isComplete() {
+        return sample >= samples.length;
+    }
+
+    /**
+     * Renders the scene for this frame. <code>idle</code> must be false
+     * whenever the scene differs from the previous frame. Returns true when
+     * more samples remain to be averaged, in which case another frame should
+     * be scheduled.
+     */
+    public boolean render(GL2 gl, Renderable scene, boolean idle) {
+        if (!hasAccumulationBuffer(gl)) {
+            scene.render(gl);
+            return false;
+        }
+
+        MatrixState state = MatrixState.get(gl);
+        if (state.getViewportWidth() != width || state.getViewportHeight() != height) {
+            width = state.getViewportWidth();
+            height = state.getViewportHeight();
+            idle = false;
+        }
+
+        if (!idle) {
+            reset();
+            scene.render(gl);
+            return false;
+        }
+
+        if (sample < samples.length) {
+            Point2d jitter = samples[sample];
+            state.pushProjection();
+            state.jitter(gl, jitter.x, jitter.y);
+            scene.render(gl);
+            state.popProjection(gl);
+
+            // running average: the previous samples weigh n / (n + 1)
+            if (sample == 0) {
+                gl.glAccum(GL2.GL_LOAD, 1.0f);
+            } else {
+                gl.glAccum(GL2.GL_MULT, sample / (sample + 1.0f));
+                gl.glAccum(GL2.GL_ACCUM, 1.0f / (sample + 1.0f));
+            }
+            sample++;
+        }
+
+        gl.glAccum(GL2.GL_RETURN, 1.0f);
+        return sample < samples.length;
+    }
+
+    private static boolean hasAccumulationBuffer(GL2 gl) {
+        // the drivers may grant fewer bits than requested, or none at all
+        return gl.getContext().getGLDrawable().getChosenGLCapabilities().getAccumRedBits() > 0;
+    }
+}
@@ -0,0 +1,92 @@
+package org.progx.jogl;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * A GLSL program made of one vertex shader and one fragment shader. Programs
+ * belong to the context they were created in and must only be used there.
+ */
+public class ShaderProgram {
+    private final int programID;
+
+    private ShaderProgram(int programID) {
+        this.programID = programID;
+    }
+
+    /**
+     * Returns true when the context can run GLSL programs.
+     */
+    public static boolean isSupported(GL2 gl) {
+        return gl.isExtensionAvailable("GL_VERSION_2_0") &&
+               gl.isFunctionAvailable("glCreateProgram");
+    }
+
+    /**
+     * Compiles and links a program. Returns null when either shader does not
+     * compile or the program does not link, in which case callers are
+     * expected to fall back on the fixed-function pipeline.
+     */
+    public static ShaderProgram getInstance(GL2 gl, String vertexSource, String fragmentSource) {
+        if (!isSupported(gl)) {
+            return null;
+        }
+
+        int vertexShader = compile(gl, GL2.GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = compile(gl, GL2.GL_FRAGMENT_SHADER, fragmentSource);
+        if (vertexShader == 0 || fragmentShader == 0) {
+            gl.glDeleteShader(vertexShader);
+            gl.glDeleteShader(fragmentShader);
+            return null;
+        }
+
+        int program = gl.glCreateProgram();
+        gl.glAttachShader(program, vertexShader);
+        gl.glAttachShader(program, fragmentShader);
+        gl.glLinkProgram(program);
+
+        // the shaders are freed along with the program
+        gl.glDeleteShader(vertexShader);
+        gl.glDeleteShader(fragmentShader);
+
+        int[] status = new int[1];
+        gl.glGetProgramiv(program, GL2.GL_LINK_STATUS, status, 0);
+        if (status[0] == GL2.GL_FALSE) {
+            gl.glDeleteProgram(program);
+            return null;
+        }
+        return new ShaderProgram(program);
+    }
+
+    private static int compile(GL2 gl, int type, String source) {
+        int shader = gl.glCreateShader(type);
+        gl.glShaderSource(shader, 1, new String[] { source }, null);
+        gl.glCompileShader(shader);
+
+        int[] status = new int[1];
+        gl.glGetShaderiv(shader, GL2.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == GL2.GL_FALSE) {
+            gl.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    public int getUniformLocation(GL2 gl, String name) {
+        return gl.glGetUniformLocation(programID, name);
+    }
+
+    public void bind(GL2 gl) {
+        gl.glUseProgram(programID);
+    }
+
+    /**
+     * Restores the fixed-function pipeline.
+     */
+    public void unbind(GL2 gl) {
+        gl.glUseProgram(0);
+    }
+
+    public void dispose(GL2 gl) {
+        gl.glDeleteProgram(programID);
+    }
+}
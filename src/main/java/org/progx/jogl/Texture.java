@@ -1,5 +1,6 @@
 package org.progx.jogl;
 import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
 
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
@@ -9,14 +10,23 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
 import javax.imageio.ImageIO;
 
+import org.progx.jogl.util.DXT1Encoder;
+import org.progx.jogl.util.DirectBufferPool;
+
 /**
  * REMIND: translucent images will have premultiplied comps by default...
  */
@@ -37,6 +47,22 @@ public class Texture {
 
     /** REMIND */
     public float tx1, ty1, tx2, ty2;
+
+    /** Whether this texture has mipmaps */
+    private boolean mipmapped = false;
+    /** Whether mipmaps must be generated explicitly after uploads */
+    private boolean generateMipmap = false;
+
+    /** The anisotropy used for mipmapped textures, at most */
+    private static final float MAX_ANISOTROPY =
+        Float.parseFloat(System.getProperty("twinkle.texture.anisotropy", "8"));
+
+    /** The texture targets supported by each context */
+    private static final Map<GLContext, TextureSupport> supports =
+        new WeakHashMap<GLContext, TextureSupport>();
+
+    /** The upload still streaming pixels into this texture, if any */
+    TextureStreamer.Upload upload;
     
     private static ColorModel rgbaColorModel =
         new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
@@ -62,39 +88,220 @@ public class Texture {
     }
 
     public static Texture getInstance(GL2 gl, BufferedImage image) {
-        boolean texNonPow2 = false;
-        boolean texRectangle = false;
-        Texture tex = null;
+        return getInstance(gl, image, null, false);
+    }
 
-        if (texNonPow2) {
+    /**
+     * Creates an empty texture of the given size, whose content is filled
+     * with <code>updateSubImage</code>. The size should be a power of two
+     * unless the context supports other sizes.
+     */
+    public static Texture getInstance(GL2 gl, int width, int height, boolean alpha) {
+        Texture tex = createTexture(gl, GL2.GL_TEXTURE_2D, alpha ? GL2.GL_RGBA : GL2.GL_RGB,
+                                    width, height);
+        tex.setImageSize(width, height);
+        return tex;
+    }
 
-        } else if (texRectangle) {
+    /**
+     * Creates a texture for the image. When a streamer is given the pixels
+     * are uploaded asynchronously and the texture must not be drawn until
+     * <code>isReady</code> returns true. Mipmapped textures are filtered
+     * trilinearly, and anisotropically when supported, which is both faster
+     * and smoother for textures drawn much smaller than their size.
+     */
+    public static Texture getInstance(GL2 gl, BufferedImage image,
+                                      TextureStreamer streamer, boolean mipmapped) {
+        Texture tex = createTexture(gl, image, mipmapped);
+        if (streamer == null) {
+            tex.updateImage(gl, image);
+        } else {
+            tex.updateImage(gl, image, streamer);
+        }
+        return tex;
+    }
 
+    /**
+     * Creates an empty texture large enough for the image. Non power of two
+     * textures are used when supported, then rectangle textures unless
+     * mipmaps are needed. Otherwise the texture is rounded up to the next
+     * power of two in each dimension.
+     */
+    private static Texture createTexture(GL2 gl, BufferedImage image, boolean mipmapped) {
+        int pixelFormat = image.getColorModel().hasAlpha() ? GL2.GL_RGBA
+                                                          : GL2.GL_RGB;
+        TextureSupport support = getSupport(gl);
+        // rectangle textures have no mipmaps
+        mipmapped &= support.mipmapGeneration != TextureSupport.NO_MIPMAPS;
+
+        Texture tex;
+        if (support.nonPow2) {
+            tex = createTexture(gl, GL2.GL_TEXTURE_2D, pixelFormat,
+                                image.getWidth(), image.getHeight());
+        } else if (support.rectangle && !mipmapped) {
+            tex = createTexture(gl, GL2.GL_TEXTURE_RECTANGLE, pixelFormat,
+                                image.getWidth(), image.getHeight());
         } else {
-            int pixelFormat = image.getColorModel().hasAlpha() ? GL2.GL_RGBA
-                                                              : GL2.GL_RGB;
             int texWidth = getNextPowerOfTwo(image.getWidth());
             int texHeight = getNextPowerOfTwo(image.getHeight());
             tex = createTexture(gl, GL2.GL_TEXTURE_2D, pixelFormat, texWidth,
                                 texHeight);
-            tex.updateImage(gl, image);
+        }
+
+        if (mipmapped) {
+            tex.setMipmapped(gl, support);
         }
         return tex;
     }
 
+    private void setMipmapped(GL2 gl, TextureSupport support) {
+        generateMipmap = support.mipmapGeneration == TextureSupport.GENERATE_MIPMAP_FUNCTION;
+        if (support.mipmapGeneration == TextureSupport.GENERATE_MIPMAP_PARAMETER) {
+            // levels are rebuilt by GL whenever the base level changes
+            gl.glTexParameteri(target, GL2.GL_GENERATE_MIPMAP, GL2.GL_TRUE);
+        }
+        setMipmapFiltering(gl, support);
+    }
+
+    private void setMipmapFiltering(GL2 gl, TextureSupport support) {
+        mipmapped = true;
+        gl.glTexParameteri(target, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_LINEAR_MIPMAP_LINEAR);
+        if (support.maxAnisotropy > 1.0f) {
+            gl.glTexParameterf(target, GL2.GL_TEXTURE_MAX_ANISOTROPY_EXT,
+                               Math.min(MAX_ANISOTROPY, support.maxAnisotropy));
+        }
+    }
+
+    /**
+     * Returns true when textures can be created from compressed images.
+     */
+    public static boolean isCompressionSupported(GL2 gl) {
+        TextureSupport support = getSupport(gl);
+        // compressed images are never padded to powers of two
+        return support.compression && support.nonPow2;
+    }
+
+    /**
+     * Creates a texture from a compressed image. The image must have mipmaps
+     * for the texture to be mipmapped. Compressed textures are uploaded as
+     * they are, without any conversion, and take 4 to 8 times less memory.
+     */
+    public static Texture getInstance(GL2 gl, CompressedImage image, boolean mipmapped) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        mipmapped &= image.isMipmapped();
+
+        Texture tex = createTexture(gl, GL2.GL_TEXTURE_2D, width, height);
+        ByteBuffer blocks = image.getBlocks().duplicate();
+        for (int level = 0, w = width, h = height; ; level++) {
+            int size = DXT1Encoder.getSize(w, h);
+            blocks.limit(blocks.position() + size);
+            gl.glCompressedTexImage2D(GL2.GL_TEXTURE_2D, level,
+                                      GL2.GL_COMPRESSED_RGB_S3TC_DXT1_EXT,
+                                      w, h, 0, size, blocks.slice());
+            blocks.position(blocks.limit());
+
+            if (!mipmapped || (w == 1 && h == 1)) {
+                break;
+            }
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+        }
+
+        if (mipmapped) {
+            tex.setMipmapFiltering(gl, getSupport(gl));
+        }
+        tex.setImageSize(width, height);
+        return tex;
+    }
+
+    /**
+     * Rebuilds the mipmap levels from the base level when GL does not do it
+     * on its own. Must be called, with the texture bound, once the base
+     * level is complete.
+     */
+    void updateMipmaps(GL2 gl) {
+        if (generateMipmap) {
+            gl.glGenerateMipmap(target);
+        }
+    }
+
+    /**
+     * Returns the texture targets supported by the current context. They are
+     * queried only once per context.
+     */
+    private static TextureSupport getSupport(GL2 gl) {
+        GLContext context = gl.getContext();
+        synchronized (supports) {
+            TextureSupport support = supports.get(context);
+            if (support == null) {
+                support = new TextureSupport(gl);
+                supports.put(context, support);
+            }
+            return support;
+        }
+    }
+
+    private static final class TextureSupport {
+        private static final int NO_MIPMAPS = 0;
+        private static final int GENERATE_MIPMAP_PARAMETER = 1;
+        private static final int GENERATE_MIPMAP_FUNCTION = 2;
+
+        private final boolean nonPow2;
+        private final boolean rectangle;
+        private final int mipmapGeneration;
+        private final float maxAnisotropy;
+        private final boolean compression;
+
+        private TextureSupport(GL2 gl) {
+            nonPow2 = gl.isExtensionAvailable("GL_ARB_texture_non_power_of_two");
+            rectangle = gl.isExtensionAvailable("GL_ARB_texture_rectangle") ||
+                        gl.isExtensionAvailable("GL_EXT_texture_rectangle") ||
+                        gl.isExtensionAvailable("GL_NV_texture_rectangle");
+
+            if (gl.isFunctionAvailable("glGenerateMipmap")) {
+                mipmapGeneration = GENERATE_MIPMAP_FUNCTION;
+            } else if (gl.isExtensionAvailable("GL_VERSION_1_4") ||
+                       gl.isExtensionAvailable("GL_SGIS_generate_mipmap")) {
+                mipmapGeneration = GENERATE_MIPMAP_PARAMETER;
+            } else {
+                mipmapGeneration = NO_MIPMAPS;
+            }
+
+            if (gl.isExtensionAvailable("GL_EXT_texture_filter_anisotropic")) {
+                float[] max = new float[1];
+                gl.glGetFloatv(GL2.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT, max, 0);
+                maxAnisotropy = max[0];
+            } else {
+                maxAnisotropy = 1.0f;
+            }
+
+            compression = gl.isExtensionAvailable("GL_EXT_texture_compression_s3tc");
+        }
+    }
+
     private static Texture createTexture(GL2 gl, int target, int pixelFormat,
                                          int texWidth, int texHeight) {
+        Texture tex = createTexture(gl, target, texWidth, texHeight);
+        gl.glTexImage2D(target, 0, pixelFormat, texWidth, texHeight, 0,
+                        pixelFormat, GL2.GL_UNSIGNED_BYTE, null);
+        return tex;
+    }
+
+    /**
+     * Creates and binds a texture object, without allocating its storage.
+     */
+    private static Texture createTexture(GL2 gl, int target,
+                                         int texWidth, int texHeight) {
         // REMIND
         int minFilter = GL2.GL_LINEAR;
         int magFilter = GL2.GL_LINEAR;
 
         int texID = createTextureID(gl);
         gl.glBindTexture(target, texID);
-        gl.glTexImage2D(target, 0, pixelFormat, texWidth, texHeight, 0,
-                        pixelFormat, GL2.GL_UNSIGNED_BYTE, null);
 
-        // REMIND
-        if (target == GL2.GL_TEXTURE_2D) {
+        // rectangle textures cannot be repeated, clamping is valid for both
+        if (target == GL2.GL_TEXTURE_2D || target == GL2.GL_TEXTURE_RECTANGLE) {
             gl.glTexParameteri(target, GL2.GL_TEXTURE_MIN_FILTER, minFilter);
             gl.glTexParameteri(target, GL2.GL_TEXTURE_MAG_FILTER, magFilter);
             gl.glTexParameteri(target, GL2.GL_TEXTURE_WRAP_S,
@@ -135,18 +342,179 @@ public class Texture {
     }
 
     /**
-     * REMIND
+     * Describes how the pixels of an image are laid out in the buffer
+     * uploaded to GL.
      */
-    private static ByteBuffer convertToByteBuffer(BufferedImage image) {
+    static final class PixelLayout {
+        final int format;
+        final int type;
+        final int bytesPerPixel;
+
+        private PixelLayout(int format, int type, int bytesPerPixel) {
+            this.format = format;
+            this.type = type;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        int getAlignment() {
+            return bytesPerPixel == 4 ? 4 : 1;
+        }
+    }
+
+    // ints in native order read as BGRA components from the least significant byte
+    private static final PixelLayout INT_ARGB_LAYOUT =
+        new PixelLayout(GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, 4);
+    private static final PixelLayout BYTE_BGR_LAYOUT =
+        new PixelLayout(GL2.GL_BGR, GL2.GL_UNSIGNED_BYTE, 3);
+    // A, B, G and R bytes read as one int are RGBA or its reverse depending on endianness
+    private static final PixelLayout BYTE_ABGR_LAYOUT =
+        new PixelLayout(GL2.GL_RGBA,
+                        ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ?
+                            GL2.GL_UNSIGNED_INT_8_8_8_8 : GL2.GL_UNSIGNED_INT_8_8_8_8_REV,
+                        4);
+    private static final PixelLayout RGBA_LAYOUT =
+        new PixelLayout(GL2.GL_RGBA, GL2.GL_UNSIGNED_BYTE, 4);
+    private static final PixelLayout RGB_LAYOUT =
+        new PixelLayout(GL2.GL_RGB, GL2.GL_UNSIGNED_BYTE, 3);
+
+    /**
+     * Returns the layout the image is uploaded in. Common image types are
+     * uploaded in their own layout, straight from their raster; others are
+     * converted to RGB or RGBA bytes first.
+     */
+    static PixelLayout getPixelLayout(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return INT_ARGB_LAYOUT;
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return BYTE_BGR_LAYOUT;
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return BYTE_ABGR_LAYOUT;
+            default:
+                return image.getColorModel().hasAlpha() ? RGBA_LAYOUT : RGB_LAYOUT;
+        }
+    }
+
+    /**
+     * Copies the pixels of the image into a direct buffer borrowed from the
+     * shared pool, in the layout returned by <code>getPixelLayout</code>.
+     * Translucent pixels are premultiplied. The buffer must be released to
+     * the pool once uploaded.
+     */
+    private static ByteBuffer convertToByteBuffer(BufferedImage image, PixelLayout layout) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        ByteBuffer imageBuffer =
+            DirectBufferPool.getShared().acquire(width * height * layout.bytesPerPixel);
+        copyPixels(image, layout, imageBuffer);
+        return imageBuffer;
+    }
+
+    /**
+     * Copies the pixels of the image at the beginning of the given buffer, in
+     * the given layout. The buffer is rewound afterwards.
+     */
+    static void copyPixels(BufferedImage image, PixelLayout layout, ByteBuffer imageBuffer) {
+        imageBuffer.rewind();
+        if (layout == INT_ARGB_LAYOUT) {
+            copyIntPixels(image, imageBuffer);
+        } else if (layout == BYTE_BGR_LAYOUT || layout == BYTE_ABGR_LAYOUT) {
+            copyBytePixels(image, imageBuffer, layout.bytesPerPixel);
+        } else {
+            copyConvertedPixels(image, imageBuffer, layout == RGBA_LAYOUT);
+        }
+        imageBuffer.rewind();
+    }
+
+    private static void copyIntPixels(BufferedImage image, ByteBuffer imageBuffer) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean premultiply = image.getType() == BufferedImage.TYPE_INT_ARGB;
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int stride = model.getScanlineStride();
+        int offset = buffer.getOffset() -
+                     raster.getSampleModelTranslateY() * stride -
+                     raster.getSampleModelTranslateX();
+
+        IntBuffer pixels = imageBuffer.asIntBuffer();
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            if (premultiply) {
+                for (int x = 0; x < width; x++) {
+                    pixels.put(premultiply(data[row + x]));
+                }
+            } else {
+                pixels.put(data, row, width);
+            }
+        }
+    }
+
+    private static void copyBytePixels(BufferedImage image, ByteBuffer imageBuffer,
+                                       int bytesPerPixel) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean premultiply = image.getType() == BufferedImage.TYPE_4BYTE_ABGR;
+
+        WritableRaster raster = image.getRaster();
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int stride = model.getScanlineStride();
+        int offset = buffer.getOffset() -
+                     raster.getSampleModelTranslateY() * stride -
+                     raster.getSampleModelTranslateX() * bytesPerPixel;
+
+        int rowLength = width * bytesPerPixel;
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            if (premultiply) {
+                for (int x = row; x < row + rowLength; x += 4) {
+                    int a = data[x] & 0xFF;
+                    imageBuffer.put((byte) a);
+                    imageBuffer.put((byte) (((data[x + 1] & 0xFF) * a + 127) / 255));
+                    imageBuffer.put((byte) (((data[x + 2] & 0xFF) * a + 127) / 255));
+                    imageBuffer.put((byte) (((data[x + 3] & 0xFF) * a + 127) / 255));
+                }
+            } else {
+                imageBuffer.put(data, row, rowLength);
+            }
+        }
+    }
+
+    private static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 0xFF) {
+            return argb;
+        } else if (a == 0) {
+            return 0;
+        }
+        int r = (((argb >> 16) & 0xFF) * a + 127) / 255;
+        int g = (((argb >> 8) & 0xFF) * a + 127) / 255;
+        int b = ((argb & 0xFF) * a + 127) / 255;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Copies images of any type by drawing them into a temporary RGB or RGBA
+     * image, which is much slower than reading their raster.
+     */
+    private static void copyConvertedPixels(BufferedImage image, ByteBuffer imageBuffer,
+                                            boolean alpha) {
         int width = image.getWidth();
         int height = image.getHeight();
 
         // create a temporary image that is compatible with OpenGL
-        ColorModel cm = image.getColorModel().hasAlpha() ? rgbaColorModel
-                                                        : rgbColorModel;
+        ColorModel cm = alpha ? rgbaColorModel : rgbColorModel;
         boolean premult = cm.isAlphaPremultiplied();
-        WritableRaster raster = cm
-                                  .createCompatibleWritableRaster(width, height);
+        WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
         BufferedImage texImage = new BufferedImage(cm, raster, premult, null);
 
         // copy the source image into the temporary image
@@ -155,15 +523,8 @@ public class Texture {
         g.drawImage(image, 0, 0, null);
         g.dispose();
 
-        // build a byte buffer from the temporary image
-        byte[] data = ((DataBufferByte) texImage.getRaster().getDataBuffer())
-                                                                             .getData();
-        ByteBuffer imageBuffer = ByteBuffer.allocateDirect(data.length);
-        imageBuffer.order(ByteOrder.nativeOrder());
+        byte[] data = ((DataBufferByte) texImage.getRaster().getDataBuffer()).getData();
         imageBuffer.put(data, 0, data.length);
-        imageBuffer.rewind();
-
-        return imageBuffer;
     }
 
     /**
@@ -182,8 +543,22 @@ public class Texture {
      * yadda yadda)
      */
     public float[] getSubImageTextureCoords(int x1, int y1, int x2, int y2) {
-        float[] coords = new float[4];
-        // REMIND: different approach needed for GL_ARB_texture_rectangle
+        return getSubImageTextureCoords(x1, y1, x2, y2, new float[4]);
+    }
+
+    /**
+     * Stores the texture coordinates of the given subregion into
+     * <code>coords</code>, which is returned.
+     */
+    public float[] getSubImageTextureCoords(int x1, int y1, int x2, int y2, float[] coords) {
+        if (target == GL2.GL_TEXTURE_RECTANGLE) {
+            // rectangle textures are addressed in pixels
+            coords[0] = x1;
+            coords[1] = y1;
+            coords[2] = x2;
+            coords[3] = y2;
+            return coords;
+        }
         coords[0] = (float) x1 / (float) texWidth;
         coords[1] = (float) y1 / (float) texHeight;
         coords[2] = (float) x2 / (float) texWidth;
@@ -203,14 +578,54 @@ public class Texture {
         imgHeight = image.getHeight();
         setImageSize(imgWidth, imgHeight);
 
-        int pixelFormat = image.getColorModel().hasAlpha() ? GL2.GL_RGBA
-                                                          : GL2.GL_RGB;
-        ByteBuffer imageBuffer = convertToByteBuffer(image);
+        PixelLayout layout = getPixelLayout(image);
+        ByteBuffer imageBuffer = convertToByteBuffer(image, layout);
         bind(gl);
-        gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, pixelFormat == GL2.GL_RGBA ? 4
-                                                                          : 1);
-        gl.glTexSubImage2D(target, 0, 0, 0, imgWidth, imgHeight, pixelFormat,
-                           GL2.GL_UNSIGNED_BYTE, imageBuffer);
+        gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, layout.getAlignment());
+        gl.glTexSubImage2D(target, 0, 0, 0, imgWidth, imgHeight, layout.format,
+                           layout.type, imageBuffer);
+        updateMipmaps(gl);
+        // GL is done with the pixels once glTexSubImage2D returns
+        DirectBufferPool.getShared().release(imageBuffer);
+    }
+
+    /**
+     * Copies the image into the given region of this texture, leaving the rest
+     * of the texture untouched.
+     */
+    public void updateSubImage(GL2 gl, BufferedImage image, int x, int y) {
+        PixelLayout layout = getPixelLayout(image);
+        ByteBuffer imageBuffer = convertToByteBuffer(image, layout);
+        bind(gl);
+        gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, layout.getAlignment());
+        gl.glTexSubImage2D(target, 0, x, y, image.getWidth(), image.getHeight(),
+                           layout.format, layout.type, imageBuffer);
+        DirectBufferPool.getShared().release(imageBuffer);
+    }
+
+    /**
+     * Replaces the image of this texture asynchronously: the pixels are
+     * converted on the streamer's worker thread, then copied to the texture
+     * over the following frames. The texture is not ready until the copy
+     * is complete.
+     */
+    public void updateImage(GL2 gl, BufferedImage image, TextureStreamer streamer) {
+        if (upload != null) {
+            upload.cancel();
+        }
+        setImageSize(image.getWidth(), image.getHeight());
+        upload = streamer.upload(gl, this, image);
+    }
+
+    public boolean isMipmapped() {
+        return mipmapped;
+    }
+
+    /**
+     * Returns true unless pixels are still being streamed into this texture.
+     */
+    public boolean isReady() {
+        return upload == null;
     }
 
     /**
@@ -220,11 +635,16 @@ public class Texture {
      *            the GL context to use for disposing the texture object
      */
     public void dispose(GL2 gl) {
+        if (upload != null) {
+            upload.cancel();
+            upload = null;
+        }
         gl.glDeleteTextures(1, new int[] { texID }, 0);
     }
 
     /**
-     * REMIND
+     * Returns the GL target of this texture, <code>GL_TEXTURE_2D</code> or
+     * <code>GL_TEXTURE_RECTANGLE</code>, which must be enabled to draw it.
      */
     public int getTarget() {
         return target;
@@ -275,7 +695,12 @@ public class Texture {
         imgHeight = height;
         tx1 = 0.0f;
         ty1 = 0.0f;
-        tx2 = (float) imgWidth / (float) texWidth;
-        ty2 = (float) imgHeight / (float) texHeight;
+        if (target == GL2.GL_TEXTURE_RECTANGLE) {
+            tx2 = imgWidth;
+            ty2 = imgHeight;
+        } else {
+            tx2 = (float) imgWidth / (float) texWidth;
+            ty2 = (float) imgHeight / (float) texHeight;
+        }
     }
 }
@@ -0,0 +1,32 @@
+package org.progx.jogl;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps compressed versions of texture images, typically on disk, so that
+ * they can be uploaded faster and take less video memory the next time they
+ * are needed. Images are identified by keys which must change whenever the
+ * image does.
+ */
+public interface TextureCache {
+    /**
+     * Looks up the compressed image for the given key in the background, then
+     * hands it to <code>listener</code>, or null when the image has not been
+     * compressed yet. The listener is called on the background thread.
+     */
+    void get(String key, Listener listener);
+
+    /**
+     * Asks for the image to be compressed and stored under the given key.
+     * Implementations are expected to return immediately and do the work in
+     * the background.
+     */
+    void put(String key, BufferedImage image);
+
+    /**
+     * Receives the result of a lookup.
+     */
+    interface Listener {
+        void loaded(String key, CompressedImage image);
+    }
+}
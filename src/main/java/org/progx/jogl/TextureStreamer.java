@@ -0,0 +1,224 @@
+package org.progx.jogl;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Uploads texture images without stalling the render thread. The pixels of
+ * each image are converted on a worker thread straight into a mapped pixel
+ * unpack buffer, then copied from that buffer to the texture by the GPU, a
+ * band of rows at a time, over as many frames as needed.
+ * <p>
+ * The streamer must be pumped once per frame by calling <code>update</code>
+ * on the render thread. At most <code>twinkle.texture.streaming.band</code>
+ * kilobytes, 1024 by default, are copied per frame. When pixel buffer objects
+ * are not supported textures are uploaded synchronously.
+ */
+public class TextureStreamer {
+    private static final int BAND_SIZE =
+        Math.max(1, Integer.getInteger("twinkle.texture.streaming.band", 1024)) * 1024;
+
+    private final Runnable listener;
+    private final ExecutorService converter =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Texture Streamer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    // touched by the render thread only
+    private final List<Upload> uploads = new LinkedList<Upload>();
+    private Boolean supported = null;
+
+    /**
+     * Creates a streamer. <code>listener</code> is run, on the worker thread,
+     * whenever an image has been converted and is ready to be copied, so that
+     * a new frame can be scheduled.
+     */
+    public TextureStreamer(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns true when pixel buffer objects are available, meaning that
+     * uploads actually are asynchronous.
+     */
+    public boolean isSupported(GL2 gl) {
+        if (supported == null) {
+            supported = gl.isExtensionAvailable("GL_VERSION_2_1") ||
+                        gl.isExtensionAvailable("GL_ARB_pixel_buffer_object");
+        }
+        return supported;
+    }
+
+    /**
+     * Starts streaming the image into the texture. Returns the pending
+     * upload, or null when the image was uploaded synchronously.
+     */
+    Upload upload(GL2 gl, Texture texture, final BufferedImage image) {
+        final Texture.PixelLayout layout = Texture.getPixelLayout(image);
+        int size = image.getWidth() * image.getHeight() * layout.bytesPerPixel;
+
+        ByteBuffer mapped = null;
+        int[] id = new int[1];
+        if (isSupported(gl)) {
+            gl.glGenBuffers(1, id, 0);
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, id[0]);
+            gl.glBufferData(GL2.GL_PIXEL_UNPACK_BUFFER, size, null, GL2.GL_STREAM_DRAW);
+            mapped = gl.glMapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, GL2.GL_WRITE_ONLY);
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+
+            if (mapped == null) {
+                gl.glDeleteBuffers(1, id, 0);
+            }
+        }
+
+        if (mapped == null) {
+            texture.updateImage(gl, image);
+            return null;
+        }
+
+        final Upload upload = new Upload(texture, id[0], layout,
+                                         image.getWidth(), image.getHeight());
+        upload.mapped = mapped.order(ByteOrder.nativeOrder());
+        uploads.add(upload);
+
+        converter.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (!upload.cancelled) {
+                        Texture.copyPixels(image, layout, upload.mapped);
+                    }
+                } finally {
+                    upload.converted = true;
+                    listener.run();
+                }
+            }
+        });
+
+        return upload;
+    }
+
+    /**
+     * Returns true when no texture is being converted or copied, in which
+     * case no texture can become ready.
+     */
+    public boolean isIdle() {
+        return uploads.isEmpty();
+    }
+
+    /**
+     * Copies the next band of converted pixels to their textures and releases
+     * the buffers of completed or cancelled uploads. Returns true when
+     * converted pixels are left to copy, in which case another frame should
+     * be scheduled.
+     */
+    public boolean update(GL2 gl) {
+        if (uploads.isEmpty()) {
+            return false;
+        }
+
+        int budget = BAND_SIZE;
+        boolean pending = false;
+
+        Iterator<Upload> iterator = uploads.iterator();
+        while (iterator.hasNext()) {
+            Upload upload = iterator.next();
+            if (!upload.converted) {
+                continue;
+            }
+
+            if (upload.cancelled) {
+                release(gl, upload);
+                iterator.remove();
+                continue;
+            }
+
+            if (budget <= 0) {
+                pending = true;
+                continue;
+            }
+
+            int rowSize = upload.width * upload.layout.bytesPerPixel;
+            int rows = Math.max(1, Math.min(upload.height - upload.row, budget / rowSize));
+            Texture texture = upload.texture;
+
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, upload.buffer);
+            if (upload.mapped != null) {
+                gl.glUnmapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER);
+                upload.mapped = null;
+            }
+            texture.bind(gl);
+            gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, upload.layout.getAlignment());
+            gl.glTexSubImage2D(texture.getTarget(), 0, 0, upload.row, upload.width, rows,
+                               upload.layout.format, upload.layout.type,
+                               (long) upload.row * rowSize);
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+
+            budget -= rows * rowSize;
+            upload.row += rows;
+
+            if (upload.row >= upload.height) {
+                texture.updateMipmaps(gl);
+                release(gl, upload);
+                iterator.remove();
+                texture.upload = null;
+            } else {
+                pending = true;
+            }
+        }
+
+        return pending;
+    }
+
+    private static void release(GL2 gl, Upload upload) {
+        if (upload.mapped != null) {
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, upload.buffer);
+            gl.glUnmapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER);
+            gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+            upload.mapped = null;
+        }
+        gl.glDeleteBuffers(1, new int[] { upload.buffer }, 0);
+    }
+
+    static final class Upload {
+        private final Texture texture;
+        private final int buffer;
+        private final Texture.PixelLayout layout;
+        private final int width, height;
+
+        private ByteBuffer mapped;
+        private int row = 0;
+
+        private volatile boolean converted = false;
+        private volatile boolean cancelled = false;
+
+        private Upload(Texture texture, int buffer, Texture.PixelLayout layout,
+                       int width, int height) {
+            this.texture = texture;
+            this.buffer = buffer;
+            this.layout = layout;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Abandons the upload. Its buffer is released once the worker thread
+         * is done with it.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
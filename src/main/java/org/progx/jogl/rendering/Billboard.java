@@ -2,19 +2,36 @@ package org.progx.jogl.rendering;
 
 import com.jogamp.opengl.GL2;
 import org.jogamp.vecmath.Point3f;
-import org.jogamp.vecmath.Point3i;
 import org.jogamp.vecmath.Vector3f;
 
+import org.progx.jogl.Camera;
 import org.progx.jogl.GLUtilities;
-
+import org.progx.jogl.MatrixState;
+
+/**
+ * Draws an item always facing the camera. When the billboard is given the
+ * camera of the scene its orientation is computed from the camera basis,
+ * otherwise the basis is derived from the modelview matrix tracked by the
+ * {@link MatrixState} of the context.
+ */
 public class Billboard extends Renderable {
     private Renderable item;
+    private Camera camera;
+    private final Vector3f camPos = new Vector3f();
+    private final Vector3f camUp = new Vector3f();
+    private final float[] transform = new float[16];
+    private final float[] orientation = new float[16];
 
     public Billboard(Renderable item) {
+        this(item, null);
+    }
+
+    public Billboard(Renderable item, Camera camera) {
         this.item = item;
+        this.camera = camera;
         setPosition(0.0f, 0.0f, 0.0f);
         setScale(1.0f, 1.0f, 1.0f);
-        setRotation(0, 0, 0);
+        setRotation(0.0f, 0.0f, 0.0f);
     }
 
     public void init(GL2 gl) {
@@ -29,17 +46,107 @@ public class Billboard extends Renderable {
         this.item = item;
     }
 
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Sets the camera of the scene, whose position is expressed in the space
+     * the billboard is placed in.
+     */
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * Draws the item rotated toward the camera and scaled. The position is
+     * part of the transform of the billboard, applied by its parent.
+     */
     public void render(GL2 gl) {
-        Vector3f camPos = new Vector3f();
-        Vector3f camUp = new Vector3f();
-        GLUtilities.getCameraVectors(gl, camPos, camUp);
-        gl.glPushMatrix();
-        GLUtilities.renderBillboard(gl, camPos, camUp, item);
-        gl.glPopMatrix();
+        float lookX, lookY, lookZ;
+        float upX, upY, upZ;
+        if (camera != null) {
+            lookX = camera.getX() - item.getX();
+            lookY = camera.getY() - item.getY();
+            lookZ = camera.getZ() - item.getZ();
+            upX = camera.getUpX();
+            upY = camera.getUpY();
+            upZ = camera.getUpZ();
+        } else {
+            // the camera is taken in the space of the billboard, already
+            // translated to the position of the item
+            GLUtilities.getCameraVectors(gl, camPos, camUp);
+            lookX = camPos.x;
+            lookY = camPos.y;
+            lookZ = camPos.z;
+            upX = camUp.x;
+            upY = camUp.y;
+            upZ = camUp.z;
+        }
+
+        computeOrientation(lookX, lookY, lookZ, upX, upY, upZ);
+        MatrixState state = MatrixState.get(gl);
+        state.push();
+        state.multiply(gl, orientation);
+        item.render(gl);
+        state.pop(gl);
+    }
+
+    private void computeOrientation(float lookX, float lookY, float lookZ,
+                                    float upX, float upY, float upZ) {
+        float length = (float) Math.sqrt(lookX * lookX + lookY * lookY + lookZ * lookZ);
+        if (length > 0.0f) {
+            lookX /= length;
+            lookY /= length;
+            lookZ /= length;
+        }
+
+        // right = up x look
+        float rightX = upY * lookZ - upZ * lookY;
+        float rightY = upZ * lookX - upX * lookZ;
+        float rightZ = upX * lookY - upY * lookX;
+        length = (float) Math.sqrt(rightX * rightX + rightY * rightY + rightZ * rightZ);
+        if (length > 0.0f) {
+            rightX /= length;
+            rightY /= length;
+            rightZ /= length;
+        }
+
+        // up = look x right
+        upX = lookY * rightZ - lookZ * rightY;
+        upY = lookZ * rightX - lookX * rightZ;
+        upZ = lookX * rightY - lookY * rightX;
+
+        float scaleX = item.getScaleX();
+        float scaleY = item.getScaleY();
+        float scaleZ = item.getScaleZ();
+        float[] m = orientation;
+        m[0] = rightX * scaleX;
+        m[1] = rightY * scaleX;
+        m[2] = rightZ * scaleX;
+        m[3] = 0.0f;
+        m[4] = upX * scaleY;
+        m[5] = upY * scaleY;
+        m[6] = upZ * scaleY;
+        m[7] = 0.0f;
+        m[8] = lookX * scaleZ;
+        m[9] = lookY * scaleZ;
+        m[10] = lookZ * scaleZ;
+        m[11] = 0.0f;
+        m[12] = m[13] = m[14] = 0.0f;
+        m[15] = 1.0f;
+    }
+
+    public float getX() {
+        return item.getX();
+    }
+
+    public float getY() {
+        return item.getY();
     }
 
-    public Point3f getPosition() {
-        return item.getPosition();
+    public float getZ() {
+        return item.getZ();
     }
 
     public void setPosition(Point3f position) {
@@ -63,21 +170,55 @@ public class Billboard extends Renderable {
         item.setPosition(coordinates);
     }
 
-    public Point3i getRotation() {
-        return new Point3i(0, 0, 0);
+    /**
+     * Returns the translation to the position of the item. The rotation
+     * toward the camera and the scale are applied when rendering.
+     */
+    @Override
+    public float[] getTransform() {
+        // the item may have changed since the last call
+        computeTransform(transform,
+                         item.getX(), item.getY(), item.getZ(),
+                         0.0f, 0.0f, 0.0f,
+                         1.0f, 1.0f, 1.0f);
+        return transform;
+    }
+
+    public float getBoundingRadius() {
+        return item.getBoundingRadius();
+    }
+
+    public float getRotationX() {
+        return 0.0f;
+    }
+
+    public float getRotationY() {
+        return 0.0f;
+    }
+
+    public float getRotationZ() {
+        return 0.0f;
+    }
+
+    public float getScaleX() {
+        return item.getScaleX();
+    }
+
+    public float getScaleY() {
+        return item.getScaleY();
     }
 
-    public Point3f getScale() {
-        return item.getScale();
+    public float getScaleZ() {
+        return item.getScaleZ();
     }
 
-    public void setRotation(int x, int y, int z) {
+    public void setRotation(float x, float y, float z) {
     }
 
-    public void setRotation(int[] coordinates) {
+    public void setRotation(float[] coordinates) {
     }
 
-    public void setRotation(Point3i rot) {
+    public void setRotation(Point3f rot) {
     }
 
     public void setScale(float x, float y, float z) {
@@ -0,0 +1,109 @@
+package org.progx.jogl.rendering;
+
+/**
+ * The position, rotation and scale of a renderable, used as a keyframe.
+ * Animations move a renderable from one pose to another by interpolating
+ * every component with the same factor, usually given by an easing curve.
+ * Rotations are interpolated per axis, which is exact as long as poses only
+ * differ by rotations around a single axis.
+ */
+public final class Pose {
+    private final float x, y, z;
+    private final float rotationX, rotationY, rotationZ;
+    private final float scaleX, scaleY, scaleZ;
+
+    public Pose(float x, float y, float z,
+                float rotationX, float rotationY, float rotationZ,
+                float scaleX, float scaleY, float scaleZ) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.rotationX = rotationX;
+        this.rotationY = rotationY;
+        this.rotationZ = rotationZ;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.scaleZ = scaleZ;
+    }
+
+    /**
+     * Creates a pose rotated around the Y axis only and scaled uniformly.
+     */
+    public Pose(float x, float y, float z, float rotationY, float scale) {
+        this(x, y, z, 0.0f, rotationY, 0.0f, scale, scale, scale);
+    }
+
+    /**
+     * Returns the current pose of the renderable.
+     */
+    public static Pose of(Renderable renderable) {
+        return new Pose(renderable.getX(), renderable.getY(), renderable.getZ(),
+                        renderable.getRotationX(), renderable.getRotationY(),
+                        renderable.getRotationZ(),
+                        renderable.getScaleX(), renderable.getScaleY(),
+                        renderable.getScaleZ());
+    }
+
+    public void apply(Renderable renderable) {
+        renderable.setPosition(x, y, z);
+        renderable.setRotation(rotationX, rotationY, rotationZ);
+        renderable.setScale(scaleX, scaleY, scaleZ);
+    }
+
+    /**
+     * Sets the renderable in the pose between <code>from</code>, when
+     * <code>factor</code> is 0, and <code>to</code>, when it is 1. Nothing
+     * is allocated, so this can be called on every animation step.
+     */
+    public static void interpolate(Pose from, Pose to, float factor, Renderable renderable) {
+        renderable.setPosition(mix(from.x, to.x, factor),
+                               mix(from.y, to.y, factor),
+                               mix(from.z, to.z, factor));
+        renderable.setRotation(mix(from.rotationX, to.rotationX, factor),
+                               mix(from.rotationY, to.rotationY, factor),
+                               mix(from.rotationZ, to.rotationZ, factor));
+        renderable.setScale(mix(from.scaleX, to.scaleX, factor),
+                            mix(from.scaleY, to.scaleY, factor),
+                            mix(from.scaleZ, to.scaleZ, factor));
+    }
+
+    private static float mix(float from, float to, float factor) {
+        return from + (to - from) * factor;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getZ() {
+        return z;
+    }
+
+    public float getRotationX() {
+        return rotationX;
+    }
+
+    public float getRotationY() {
+        return rotationY;
+    }
+
+    public float getRotationZ() {
+        return rotationZ;
+    }
+
+    public float getScaleX() {
+        return scaleX;
+    }
+
+    public float getScaleY() {
+        return scaleY;
+    }
+
+    public float getScaleZ() {
+        return scaleZ;
+    }
+}
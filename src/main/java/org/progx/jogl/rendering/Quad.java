@@ -2,19 +2,42 @@ package org.progx.jogl.rendering;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
+import org.progx.jogl.CompressedImage;
 import org.progx.jogl.Texture;
+import org.progx.jogl.TextureCache;
+import org.progx.jogl.TextureStreamer;
 
 public class Quad extends Renderable {
     // texture
     protected BufferedImage textureImage = null;
     protected Texture texture = null;
+    protected Texture nextTexture = null;
     protected Rectangle textureCrop = null;
+    private Rectangle currentCrop = null;
+    private Rectangle nextCrop = null;
+    private final float[] textureCoords = new float[4];
+    protected TextureStreamer streamer = null;
+    protected boolean mipmapped = false;
+    protected TextureCache textureCache = null;
+    protected String textureKey = null;
+    protected CompressedImage compressedImage = null;
     
     // geometry
     protected float width, height;
+    // x, y, z, s, t, r, g, b, a
+    protected static final int VERTEX_SIZE = 9;
+    private static final boolean IMMEDIATE_MODE = Boolean.getBoolean("twinkle.render.immediate");
+    private boolean immediateMode = IMMEDIATE_MODE;
+    private FloatBuffer vertices = null;
+    private boolean geometryDirty = true;
+    private int vertexBuffer = 0;
+    private boolean bufferDirty = true;
     
     // alpha
     protected float alpha = 1.0f;
@@ -30,6 +53,7 @@ public class Quad extends Renderable {
     public void setDimension(float width, float height) {
         this.width = width;
         this.height = height;
+        invalidateGeometry();
     }
     
     public float getWidth() {
@@ -40,22 +64,60 @@ public class Quad extends Renderable {
         return height;
     }
     
+    @Override
+    public float getBoundingRadius() {
+        return (float) Math.sqrt(width * width + height * height) / 2.0f;
+    }
+    
     public float getAlpha() {
         return alpha;
     }
 
     public void setAlpha(float alpha) {
         this.alpha = alpha;
+        invalidateGeometry();
+    }
+    
+    public boolean isImmediateMode() {
+        return immediateMode;
+    }
+
+    /**
+     * Sets whether the quad is drawn with <code>glBegin</code>/<code>glEnd</code>
+     * rather than from a vertex buffer object. Immediate mode is the default
+     * when <code>twinkle.render.immediate</code> is set and is always used
+     * when vertex buffers are not supported.
+     */
+    public void setImmediateMode(boolean immediateMode) {
+        this.immediateMode = immediateMode;
+    }
+
+    public BufferedImage getTextureImage() {
+        return textureImage;
     }
 
     public void setTextureImage(BufferedImage textureImage) {
+        setTextureImage(textureImage, null);
+    }
+
+    /**
+     * Sets the texture image and the key identifying it in the texture cache.
+     * Images without a key are never cached.
+     */
+    public void setTextureImage(BufferedImage textureImage, String textureKey) {
         if (textureImage == null) {
             throw new IllegalArgumentException("Quad texture cannot be null.");
         }
         
         this.textureImage = textureImage;
+        this.textureKey = textureKey;
+        this.compressedImage = null;
         setTextureCrop(null);
     }
+
+    public String getTextureKey() {
+        return textureKey;
+    }
     
     public Rectangle getTextureCrop() {
         return textureCrop;
@@ -71,55 +133,259 @@ public class Quad extends Renderable {
         this.textureCrop = textureCrop;
     }
     
+    public TextureStreamer getStreamer() {
+        return streamer;
+    }
+
+    /**
+     * Sets the streamer used to upload the texture asynchronously. When null,
+     * the default, the texture is uploaded as soon as the quad is initialized.
+     */
+    public void setStreamer(TextureStreamer streamer) {
+        this.streamer = streamer;
+    }
+    
+    public TextureCache getTextureCache() {
+        return textureCache;
+    }
+
+    /**
+     * Sets the cache of compressed textures. When the texture image has a
+     * key and no compressed version was given, the cache is asked to
+     * compress the image for the next time.
+     */
+    public void setTextureCache(TextureCache textureCache) {
+        this.textureCache = textureCache;
+    }
+
+    public CompressedImage getCompressedImage() {
+        return compressedImage;
+    }
+
+    /**
+     * Sets the compressed version of the texture image, as looked up in the
+     * texture cache, which is uploaded instead of the image when compressed
+     * textures are supported. Setting the texture image clears it. Takes
+     * effect the next time the quad is initialized.
+     */
+    public void setCompressedImage(CompressedImage compressedImage) {
+        this.compressedImage = compressedImage;
+    }
+    
+    public boolean isMipmapped() {
+        return mipmapped;
+    }
+
+    /**
+     * Sets whether the texture has mipmaps. They should be used by quads drawn
+     * much smaller than their texture image. Takes effect the next time the
+     * quad is initialized.
+     */
+    public void setMipmapped(boolean mipmapped) {
+        this.mipmapped = mipmapped;
+    }
+    
+    /**
+     * Creates the texture of the current texture image. When the quad is
+     * initialized again after its image changed, the previous texture keeps
+     * being drawn until the new one is ready.
+     */
     public void init(GL2 gl) {
-        texture = Texture.getInstance(gl, textureImage);
+        if (nextTexture != null) {
+            nextTexture.dispose(gl);
+        }
+        
+        nextTexture = null;
+        if (Texture.isCompressionSupported(gl)) {
+            if (compressedImage != null) {
+                nextTexture = Texture.getInstance(gl, compressedImage, mipmapped);
+            } else if (textureCache != null && textureKey != null) {
+                textureCache.put(textureKey, textureImage);
+            }
+        }
+        
+        if (nextTexture == null) {
+            nextTexture = Texture.getInstance(gl, textureImage, streamer, mipmapped);
+        }
+        nextCrop = textureCrop;
     }
     
     public void dispose(GL2 gl) {
-        texture.dispose(gl);
+        if (texture != null) {
+            texture.dispose(gl);
+            texture = null;
+        }
+        if (nextTexture != null) {
+            nextTexture.dispose(gl);
+            nextTexture = null;
+        }
+        if (vertexBuffer != 0) {
+            gl.glDeleteBuffers(1, new int[] { vertexBuffer }, 0);
+            vertexBuffer = 0;
+        }
     }
     
-    // rendering
-    public void render(GL2 gl) {
-        float[] crop = texture.getSubImageTextureCoords(textureCrop.x,
-                                                        textureCrop.y,
-                                                        textureCrop.x + textureCrop.width,
-                                                        textureCrop.y + textureCrop.height);
-        float tx1 = crop[0];
-        float ty1 = crop[1];
-        float tx2 = crop[2];
-        float ty2 = crop[3];
-        
+    /**
+     * Switches to the new texture once it is ready. Returns false when there
+     * is no texture to draw yet.
+     */
+    protected boolean updateTexture(GL2 gl) {
+        if (nextTexture != null && nextTexture.isReady()) {
+            if (texture != null) {
+                texture.dispose(gl);
+            }
+            texture = nextTexture;
+            currentCrop = nextCrop;
+            nextTexture = null;
+            invalidateGeometry();
+        }
+        return texture != null;
+    }
+    
+    /**
+     * Returns the coordinates of the crop within the texture being drawn,
+     * which is not the current texture image while a new one is streamed.
+     * The returned array is reused and must not be modified.
+     */
+    protected float[] getTextureCoords() {
+        return texture.getSubImageTextureCoords(currentCrop.x,
+                                                currentCrop.y,
+                                                currentCrop.x + currentCrop.width,
+                                                currentCrop.y + currentCrop.height,
+                                                textureCoords);
+    }
+    
+    /**
+     * Returns true when the quad must be blended with what is behind it.
+     */
+    protected boolean isBlended() {
+        return alpha < 1.0f;
+    }
+    
+    /**
+     * Returns the number of vertices put by <code>buildGeometry</code>.
+     */
+    protected int getVertexCount() {
+        return 4;
+    }
+    
+    /**
+     * Puts the vertices of the quads to draw, given the texture coordinates
+     * of the crop. Called only when the geometry changed.
+     */
+    protected void buildGeometry(FloatBuffer vertices,
+                                 float tx1, float ty1, float tx2, float ty2) {
         float x = -width / 2.0f;
         float y = -height / 2.0f;
         float z = 0.0f;
         
-        if (alpha < 1.0f) {
+        // render solid/upright texture
+        putVertex(vertices, x + width, y + height, z, tx2, ty1, alpha);
+        putVertex(vertices, x, y + height, z, tx1, ty1, alpha);
+        putVertex(vertices, x, y, z, tx1, ty2, alpha);
+        putVertex(vertices, x + width, y, z, tx2, ty2, alpha);
+    }
+    
+    protected static void putVertex(FloatBuffer vertices, float x, float y, float z,
+                                    float s, float t, float alpha) {
+        vertices.put(x).put(y).put(z);
+        vertices.put(s).put(t);
+        vertices.put(alpha).put(alpha).put(alpha).put(alpha);
+    }
+    
+    /**
+     * Marks the geometry as changed so that it is built again before the next
+     * rendering.
+     */
+    protected void invalidateGeometry() {
+        geometryDirty = true;
+    }
+    
+    private void updateGeometry() {
+        int size = getVertexCount() * VERTEX_SIZE;
+        if (vertices == null || vertices.capacity() < size) {
+            vertices = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        
+        float[] crop = getTextureCoords();
+        vertices.clear();
+        buildGeometry(vertices, crop[0], crop[1], crop[2], crop[3]);
+        vertices.flip();
+        
+        geometryDirty = false;
+        bufferDirty = true;
+    }
+    
+    // rendering
+    public void render(GL2 gl) {
+        if (!updateTexture(gl)) {
+            return;
+        }
+        if (geometryDirty) {
+            updateGeometry();
+        }
+        
+        boolean blended = isBlended();
+        if (blended) {
             gl.glEnable(GL.GL_BLEND);
             gl.glBlendFunc(GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA);
         }
-        gl.glEnable(GL.GL_TEXTURE_2D);
+        gl.glEnable(texture.getTarget());
         texture.bind(gl);
         gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_MODULATE);
 
-        gl.glBegin(GL2.GL_QUADS);
-
-        // render solid/upright texture
-        gl.glColor4f(alpha, alpha, alpha, alpha);
-        gl.glTexCoord2f(tx2, ty1);
-        gl.glVertex3f(x + width, y + height, z);
-        gl.glTexCoord2f(tx1, ty1);
-        gl.glVertex3f(x, y + height, z);
-        gl.glTexCoord2f(tx1, ty2);
-        gl.glVertex3f(x, y, z);
-        gl.glTexCoord2f(tx2, ty2);
-        gl.glVertex3f(x + width, y, z);
-        
-        gl.glEnd();
+        // the function lookup is skipped once the buffer exists
+        if (!immediateMode && (vertexBuffer != 0 || gl.isFunctionAvailable("glGenBuffers"))) {
+            drawVertexBuffer(gl);
+        } else {
+            drawImmediate(gl);
+        }
         
-        gl.glDisable(GL.GL_TEXTURE_2D);
-        if (alpha < 1.0f) {
+        gl.glDisable(texture.getTarget());
+        if (blended) {
             gl.glDisable(GL.GL_BLEND);
         }
     }
+    
+    private void drawVertexBuffer(GL2 gl) {
+        if (vertexBuffer == 0) {
+            int[] id = new int[1];
+            gl.glGenBuffers(1, id, 0);
+            vertexBuffer = id[0];
+            bufferDirty = true;
+        }
+        
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBuffer);
+        if (bufferDirty) {
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, vertices.limit() * 4, vertices,
+                            GL.GL_STATIC_DRAW);
+            bufferDirty = false;
+        }
+        
+        int stride = VERTEX_SIZE * 4;
+        gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+        gl.glVertexPointer(3, GL.GL_FLOAT, stride, 0);
+        gl.glTexCoordPointer(2, GL.GL_FLOAT, stride, 3 * 4);
+        gl.glColorPointer(4, GL.GL_FLOAT, stride, 5 * 4);
+        
+        gl.glDrawArrays(GL2.GL_QUADS, 0, vertices.limit() / VERTEX_SIZE);
+        
+        gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+        gl.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+    }
+    
+    private void drawImmediate(GL2 gl) {
+        gl.glBegin(GL2.GL_QUADS);
+        for (int i = 0; i < vertices.limit(); i += VERTEX_SIZE) {
+            gl.glColor4f(vertices.get(i + 5), vertices.get(i + 6),
+                         vertices.get(i + 7), vertices.get(i + 8));
+            gl.glTexCoord2f(vertices.get(i + 3), vertices.get(i + 4));
+            gl.glVertex3f(vertices.get(i), vertices.get(i + 1), vertices.get(i + 2));
+        }
+        gl.glEnd();
+    }
 }
\ No newline at end of file
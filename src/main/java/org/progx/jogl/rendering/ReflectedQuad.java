@@ -1,12 +1,26 @@
 package org.progx.jogl.rendering;
 import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
 
 import com.jogamp.opengl.GL2;
 
+/**
+ * A quad drawn above its reflection. When GLSL is available, the picture and
+ * its reflection are drawn from a single quad by a shader computing the fade
+ * per fragment, which allows non-linear fades and blurring the reflection.
+ * Otherwise, or when <code>twinkle.render.shaders</code> is set to false, the
+ * reflection is a second quad faded by its vertex colors.
+ */
 public class ReflectedQuad extends Quad {
+    private static final boolean SHADERS =
+        Boolean.parseBoolean(System.getProperty("twinkle.render.shaders", "true"));
+
     // reflection
     protected float fadeDistance = 0.8f;
     protected float reflectionTransparency = 4.3f;
+    protected float fadeExponent = 1.0f;
+    protected float blur = 0.0f;
+    private boolean shaded = false;
 
     public ReflectedQuad(float x, float y, float z,
                          float width, float height,
@@ -14,12 +28,24 @@ public class ReflectedQuad extends Quad {
         super(x, y, z, width, height, textureImage);
     }
     
+    /**
+     * Returns the radius enclosing the quad and its reflection, which hangs
+     * below it.
+     */
+    @Override
+    public float getBoundingRadius() {
+        float halfWidth = width / 2.0f;
+        float bottom = height / 2.0f + height * fadeDistance;
+        return (float) Math.sqrt(halfWidth * halfWidth + bottom * bottom);
+    }
+    
     public float getFadeDistance() {
         return fadeDistance;
     }
 
     public void setFadeDistance(float fadeDistance) {
         this.fadeDistance = fadeDistance;
+        invalidateGeometry();
     }
 
     public float getReflectionTransparency() {
@@ -28,60 +54,106 @@ public class ReflectedQuad extends Quad {
 
     public void setReflectionTransparency(float reflectionTransparency) {
         this.reflectionTransparency = reflectionTransparency;
+        invalidateGeometry();
+    }
+
+    public float getFadeExponent() {
+        return fadeExponent;
+    }
+
+    /**
+     * Sets the shape of the fade curve: the reflection alpha decreases with
+     * <code>(1 - distance) ^ fadeExponent</code>, linearly by default. Only
+     * honored by the shader.
+     */
+    public void setFadeExponent(float fadeExponent) {
+        this.fadeExponent = fadeExponent;
+    }
+
+    public float getBlur() {
+        return blur;
+    }
+
+    /**
+     * Sets how much the reflection is blurred at the bottom of the fade, as
+     * a fraction of the quad width. The blur grows from nothing at the mirror
+     * line. Only honored by the shader.
+     */
+    public void setBlur(float blur) {
+        this.blur = blur;
     }
 
     // rendering
     @Override
     public void render(GL2 gl) {
+        if (!updateTexture(gl)) {
+            return;
+        }
+        
+        ReflectionShader shader = null;
+        if (SHADERS) {
+            shader = ReflectionShader.getInstance(gl, texture.getTarget());
+        }
+        if (shaded != (shader != null)) {
+            shaded = shader != null;
+            invalidateGeometry();
+        }
+        
+        if (shader == null) {
+            super.render(gl);
+            return;
+        }
+        
+        float[] crop = getTextureCoords();
+        float blurX = blur * Math.abs(crop[2] - crop[0]);
+        float blurY = blur * Math.abs(crop[3] - crop[1]) * width / height;
+        shader.bind(gl, crop, fadeDistance, 1.0f / reflectionTransparency,
+                    fadeExponent, blurX, blurY);
+        super.render(gl);
+        shader.unbind(gl);
+    }
+    
+    @Override
+    protected boolean isBlended() {
+        return true;
+    }
+    
+    @Override
+    protected int getVertexCount() {
+        return shaded ? 4 : 8;
+    }
+    
+    @Override
+    protected void buildGeometry(FloatBuffer vertices,
+                                 float tx1, float ty1, float tx2, float ty2) {
         float alpha = 1.0f;
-        float[] crop = texture.getSubImageTextureCoords(textureCrop.x,
-                                                        textureCrop.y,
-                                                        textureCrop.x + textureCrop.width,
-                                                        textureCrop.y + textureCrop.height);
-        float tx1 = crop[0];
-        float ty1 = crop[1];
-        float tx2 = crop[2];
-        float ty2 = crop[3];
         
         float x = -width / 2.0f;
         float y = -height / 2.0f;
         float z = 0.0f;
         
-        gl.glEnable(GL2.GL_BLEND);
-        gl.glBlendFunc(GL2.GL_ONE, GL2.GL_ONE_MINUS_SRC_ALPHA);
-        gl.glEnable(GL2.GL_TEXTURE_2D);
-        texture.bind(gl);
-        gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_MODULATE);
-
-        gl.glBegin(GL2.GL_QUADS);
-
+        if (shaded) {
+            // positions within the picture, the shader computes the crop
+            putVertex(vertices, x + width, y + height, z, 1.0f, 1.0f, alpha);
+            putVertex(vertices, x, y + height, z, 0.0f, 1.0f, alpha);
+            putVertex(vertices, x, y - (height * fadeDistance), z, 0.0f, -fadeDistance, alpha);
+            putVertex(vertices, x + width, y - (height * fadeDistance), z, 1.0f, -fadeDistance, alpha);
+            return;
+        }
+        
         // render solid/upright texture
-        gl.glColor4f(alpha, alpha, alpha, alpha);
-        gl.glTexCoord2f(tx2, ty1);
-        gl.glVertex3f(x + width, y + height, z);
-        gl.glTexCoord2f(tx1, ty1);
-        gl.glVertex3f(x, y + height, z);
-        gl.glTexCoord2f(tx1, ty2);
-        gl.glVertex3f(x, y, z);
-        gl.glTexCoord2f(tx2, ty2);
-        gl.glVertex3f(x + width, y, z);
+        putVertex(vertices, x + width, y + height, z, tx2, ty1, alpha);
+        putVertex(vertices, x, y + height, z, tx1, ty1, alpha);
+        putVertex(vertices, x, y, z, tx1, ty2, alpha);
+        putVertex(vertices, x + width, y, z, tx2, ty2, alpha);
         
         alpha /= reflectionTransparency;
         
-        gl.glColor4f(alpha, alpha, alpha, alpha);
-        gl.glTexCoord2f(tx2, ty2);
-        gl.glVertex3f(x + width, y, z);
-        gl.glTexCoord2f(tx1, ty2);
-        gl.glVertex3f(x, y, z);
-        gl.glColor4f(0.0f, 0.0f, 0.0f, 0.0f);
-        gl.glTexCoord2f(tx1, ty2 * (1 - fadeDistance));
-        gl.glVertex3f(x, y - (height * fadeDistance), z);
-        gl.glTexCoord2f(tx2, ty2 * (1 - fadeDistance));
-        gl.glVertex3f(x + width, y - (height * fadeDistance), z);
-
-        gl.glEnd();
-        
-        gl.glDisable(GL2.GL_TEXTURE_2D);
-        gl.glDisable(GL2.GL_BLEND);
+        putVertex(vertices, x + width, y, z, tx2, ty2, alpha);
+        putVertex(vertices, x, y, z, tx1, ty2, alpha);
+        putVertex(vertices, x, y - (height * fadeDistance), z,
+                  tx1, ty2 * (1 - fadeDistance), 0.0f);
+        putVertex(vertices, x + width, y - (height * fadeDistance), z,
+                  tx2, ty2 * (1 - fadeDistance), 0.0f);
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package org.progx.jogl.rendering;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
+import org.progx.jogl.ShaderProgram;
+
+/**
+ * Draws a picture and its reflection from a single quad. The quad spans the
+ * picture and the reflection below it; its texture coordinates give the
+ * position within the picture, from 0 to 1 horizontally and from 1 at the
+ * top to 0 at the mirror line and <code>-fadeDistance</code> at the bottom.
+ * The fragment shader mirrors the picture below the line and fades it out
+ * along a power curve, optionally blurring it more as it gets fainter.
+ * <p>
+ * One program is compiled per context and texture target.
+ */
+class ReflectionShader {
+    private static final String VERTEX_SHADER =
+        "#version 110\n" +
+        "varying vec2 position;\n" +
+        "void main() {\n" +
+        "    position = gl_MultiTexCoord0.xy;\n" +
+        "    gl_Position = ftransform();\n" +
+        "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#ifdef RECTANGLE\n" +
+        "#extension GL_ARB_texture_rectangle : enable\n" +
+        "uniform sampler2DRect image;\n" +
+        "#define SAMPLE(coords) texture2DRect(image, coords)\n" +
+        "#else\n" +
+        "uniform sampler2D image;\n" +
+        "#define SAMPLE(coords) texture2D(image, coords)\n" +
+        "#endif\n" +
+        // left, top, right and bottom texture coordinates of the crop
+        "uniform vec4 crop;\n" +
+        "uniform float fadeDistance;\n" +
+        "uniform float reflectionAlpha;\n" +
+        "uniform float fadeExponent;\n" +
+        "uniform vec2 blur;\n" +
+        "varying vec2 position;\n" +
+        "void main() {\n" +
+        "    if (position.y >= 0.0) {\n" +
+        "        gl_FragColor = SAMPLE(mix(crop.xw, crop.zy, position));\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    float distance = min(-position.y / fadeDistance, 1.0);\n" +
+        "    vec2 coords = mix(crop.xw, crop.zy, vec2(position.x, -position.y));\n" +
+        "    vec4 color = SAMPLE(coords);\n" +
+        "    if (blur.x > 0.0 || blur.y > 0.0) {\n" +
+        "        vec2 offset = blur * distance;\n" +
+        "        color = (color * 2.0 +\n" +
+        "                 SAMPLE(coords + vec2(offset.x, 0.0)) +\n" +
+        "                 SAMPLE(coords - vec2(offset.x, 0.0)) +\n" +
+        "                 SAMPLE(coords + vec2(0.0, offset.y)) +\n" +
+        "                 SAMPLE(coords - vec2(0.0, offset.y))) / 6.0;\n" +
+        "    }\n" +
+        // textures are premultiplied, so is the faded color
+        "    gl_FragColor = color * reflectionAlpha * pow(1.0 - distance, fadeExponent);\n" +
+        "}\n";
+
+    // per context, the shaders for 2D and rectangle textures, null until
+    // compiled, and null as well when the compilation failed
+    private static final Map<GLContext, ReflectionShader[]> shaders =
+        new WeakHashMap<GLContext, ReflectionShader[]>();
+    private static final Map<GLContext, boolean[]> compiled =
+        new WeakHashMap<GLContext, boolean[]>();
+
+    private final ShaderProgram program;
+    private final int image;
+    private final int crop;
+    private final int fadeDistance;
+    private final int reflectionAlpha;
+    private final int fadeExponent;
+    private final int blur;
+
+    private ReflectionShader(GL2 gl, ShaderProgram program) {
+        this.program = program;
+        image = program.getUniformLocation(gl, "image");
+        crop = program.getUniformLocation(gl, "crop");
+        fadeDistance = program.getUniformLocation(gl, "fadeDistance");
+        reflectionAlpha = program.getUniformLocation(gl, "reflectionAlpha");
+        fadeExponent = program.getUniformLocation(gl, "fadeExponent");
+        blur = program.getUniformLocation(gl, "blur");
+    }
+
+    /**
+     * Returns the shader sampling textures of the given target in the
+     * current context, or null when GLSL is not available or the shader does
+     * not compile.
+     */
+    static ReflectionShader getInstance(GL2 gl, int target) {
+        GLContext context = gl.getContext();
+        int index = target == GL2.GL_TEXTURE_RECTANGLE ? 1 : 0;
+        synchronized (shaders) {
+            ReflectionShader[] byTarget = shaders.get(context);
+            boolean[] done = compiled.get(context);
+            if (byTarget == null) {
+                byTarget = new ReflectionShader[2];
+                done = new boolean[2];
+                shaders.put(context, byTarget);
+                compiled.put(context, done);
+            }
+
+            if (!done[index]) {
+                byTarget[index] = compile(gl, target);
+                done[index] = true;
+            }
+            return byTarget[index];
+        }
+    }
+
+    private static ReflectionShader compile(GL2 gl, int target) {
+        String header = "#version 110\n";
+        if (target == GL2.GL_TEXTURE_RECTANGLE) {
+            header += "#define RECTANGLE\n";
+        }
+
+        ShaderProgram program = ShaderProgram.getInstance(gl, VERTEX_SHADER,
+                                                          header + FRAGMENT_SHADER);
+        return program == null ? null : new ReflectionShader(gl, program);
+    }
+
+    void bind(GL2 gl, float[] textureCoords,
+              float fadeDistance, float reflectionAlpha, float fadeExponent,
+              float blurX, float blurY) {
+        program.bind(gl);
+        gl.glUniform1i(image, 0);
+        gl.glUniform4f(crop, textureCoords[0], textureCoords[1],
+                       textureCoords[2], textureCoords[3]);
+        gl.glUniform1f(this.fadeDistance, fadeDistance);
+        gl.glUniform1f(this.reflectionAlpha, reflectionAlpha);
+        gl.glUniform1f(this.fadeExponent, fadeExponent);
+        gl.glUniform2f(blur, blurX, blurY);
+    }
+
+    void unbind(GL2 gl) {
+        program.unbind(gl);
+    }
+}
@@ -2,21 +2,25 @@ package org.progx.jogl.rendering;
 
 import com.jogamp.opengl.GL2;
 import org.jogamp.vecmath.Point3f;
-import org.jogamp.vecmath.Point3i;
 
 public abstract class Renderable {
-    protected int rotationX, rotationY, rotationZ;
+    // rotations, in degrees
+    protected float rotationX, rotationY, rotationZ;
     protected float scaleX, scaleY, scaleZ;
     protected float x, y, z;
     protected String name;
     
+    // model matrix, in column-major order
+    private final float[] transform = new float[16];
+    private boolean transformDirty = true;
+    
     public Renderable() {
         this(0.0f, 0.0f, 0.0f);
     }
     
     public Renderable(float x, float y, float z) {
         setPosition(x, y, z);
-        setRotation(0, 0, 0);
+        setRotation(0.0f, 0.0f, 0.0f);
         setScale(1.0f, 1.0f, 1.0f);
     }
     
@@ -52,19 +56,43 @@ public abstract class Renderable {
         this.x = x;
         this.y = y;
         this.z = z;
+        invalidateTransform();
     }
     
     public Point3f getPosition() {
-        return new Point3f(x, y, z);
+        return getPosition(new Point3f());
+    }
+    
+    /**
+     * Copies the position into <code>position</code> and returns it. Render
+     * loops should use this method or the primitive getters rather than
+     * allocating a new point each frame.
+     */
+    public Point3f getPosition(Point3f position) {
+        position.set(getX(), getY(), getZ());
+        return position;
+    }
+    
+    public float getX() {
+        return x;
     }
     
-    public void setRotation(int x, int y, int z) {
+    public float getY() {
+        return y;
+    }
+    
+    public float getZ() {
+        return z;
+    }
+    
+    public void setRotation(float x, float y, float z) {
         this.rotationX = x;
         this.rotationY = y;
         this.rotationZ = z;
+        invalidateTransform();
     }
     
-    public void setRotation(int[] coordinates) {
+    public void setRotation(float[] coordinates) {
         if (coordinates.length < 3) {
             throw new IllegalArgumentException("3 coordinates are required."); 
         }
@@ -72,18 +100,36 @@ public abstract class Renderable {
         setRotation(coordinates[0], coordinates[1], coordinates[2]);
     }
     
-    public void setRotation(Point3i rot) {
+    public void setRotation(Point3f rot) {
         setRotation(rot.x, rot.y, rot.z);        
     }
     
-    public Point3i getRotation() {
-        return new Point3i(rotationX, rotationY, rotationZ);
+    public Point3f getRotation() {
+        return getRotation(new Point3f());
+    }
+    
+    public Point3f getRotation(Point3f rotation) {
+        rotation.set(getRotationX(), getRotationY(), getRotationZ());
+        return rotation;
+    }
+    
+    public float getRotationX() {
+        return rotationX;
+    }
+    
+    public float getRotationY() {
+        return rotationY;
+    }
+    
+    public float getRotationZ() {
+        return rotationZ;
     }
     
     public void setScale(float x, float y, float z) {
         this.scaleX = x;
         this.scaleY = y;
         this.scaleZ = z;
+        invalidateTransform();
     }
     
     public void setScale(float[] coordinates) {
@@ -99,7 +145,101 @@ public abstract class Renderable {
     }
     
     public Point3f getScale() {
-        return new Point3f(scaleX, scaleY, scaleZ);
+        return getScale(new Point3f());
+    }
+    
+    public Point3f getScale(Point3f scale) {
+        scale.set(getScaleX(), getScaleY(), getScaleZ());
+        return scale;
+    }
+    
+    public float getScaleX() {
+        return scaleX;
+    }
+    
+    public float getScaleY() {
+        return scaleY;
+    }
+    
+    public float getScaleZ() {
+        return scaleZ;
+    }
+    
+    /**
+     * Returns the radius of a sphere centered on the origin of the
+     * renderable, before its transform, enclosing everything it draws. It is
+     * infinite by default, meaning that the renderable is never culled.
+     */
+    public float getBoundingRadius() {
+        return Float.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Returns the largest scale factor of the transform, by which the
+     * bounding radius grows once transformed.
+     */
+    public float getMaxScale() {
+        return Math.max(Math.abs(getScaleX()),
+                        Math.max(Math.abs(getScaleY()), Math.abs(getScaleZ())));
+    }
+    
+    /**
+     * Returns the model matrix, in column-major order as expected by
+     * <code>glMultMatrixf</code>. It scales, then translates, then rotates
+     * around the X, Y and Z axes, in that order, and is computed again only
+     * after the position, rotation or scale changed. The returned array must
+     * not be modified.
+     */
+    public float[] getTransform() {
+        if (transformDirty) {
+            computeTransform(transform,
+                             x, y, z,
+                             rotationX, rotationY, rotationZ,
+                             scaleX, scaleY, scaleZ);
+            transformDirty = false;
+        }
+        return transform;
+    }
+    
+    protected void invalidateTransform() {
+        transformDirty = true;
+    }
+    
+    /**
+     * Computes S.T.Rx.Ry.Rz, the matrix built by <code>glScalef</code>,
+     * <code>glTranslatef</code> and three <code>glRotatef</code>, into
+     * <code>m</code>. Angles are in degrees.
+     */
+    protected static void computeTransform(float[] m,
+                                           float x, float y, float z,
+                                           float angleX, float angleY, float angleZ,
+                                           float scaleX, float scaleY, float scaleZ) {
+        double ax = Math.toRadians(angleX);
+        double ay = Math.toRadians(angleY);
+        double az = Math.toRadians(angleZ);
+        float cx = (float) Math.cos(ax), sx = (float) Math.sin(ax);
+        float cy = (float) Math.cos(ay), sy = (float) Math.sin(ay);
+        float cz = (float) Math.cos(az), sz = (float) Math.sin(az);
+        
+        m[0] = scaleX * cy * cz;
+        m[1] = scaleY * (sx * sy * cz + cx * sz);
+        m[2] = scaleZ * (sx * sz - cx * sy * cz);
+        m[3] = 0.0f;
+        
+        m[4] = scaleX * -cy * sz;
+        m[5] = scaleY * (cx * cz - sx * sy * sz);
+        m[6] = scaleZ * (cx * sy * sz + sx * cz);
+        m[7] = 0.0f;
+        
+        m[8] = scaleX * sy;
+        m[9] = scaleY * -sx * cy;
+        m[10] = scaleZ * cx * cy;
+        m[11] = 0.0f;
+        
+        m[12] = scaleX * x;
+        m[13] = scaleY * y;
+        m[14] = scaleZ * z;
+        m[15] = 1.0f;
     }
     
     public void setName(String name) {
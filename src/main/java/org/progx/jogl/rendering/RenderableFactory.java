@@ -5,19 +5,37 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
 
-import javax.imageio.ImageIO;
+import org.progx.jogl.Camera;
+import org.progx.jogl.util.ImageDecoder;
 
 public class RenderableFactory {
     public static Renderable createBillboard(Renderable item) {
         return new Billboard(item);
     }
     
+    public static Renderable createBillboard(Renderable item, Camera camera) {
+        return new Billboard(item, camera);
+    }
+    
     public static Renderable createReflectedQuad(float x, float y, float z,
                                                  float w, float h,
                                                  URL texture, Rectangle crop) {
+        return createReflectedQuad(x, y, z, w, h, texture, crop, 0);
+    }
+
+    /**
+     * Creates a reflected quad whose texture is decoded from the cropped
+     * region of <code>texture</code>, subsampled down to about
+     * <code>maxTextureWidth</code> pixels wide. A width of 0 or less decodes
+     * the region at full resolution.
+     */
+    public static Renderable createReflectedQuad(float x, float y, float z,
+                                                 float w, float h,
+                                                 URL texture, Rectangle crop,
+                                                 int maxTextureWidth) {
         try {
-            BufferedImage image = ImageIO.read(texture);
-            return createReflectedQuad(x, y, z, w, h, image, crop);
+            BufferedImage image = ImageDecoder.read(texture, crop, maxTextureWidth, 0);
+            return createReflectedQuad(x, y, z, w, h, image, null);
         } catch (IOException e) {
         }
         
@@ -53,9 +71,22 @@ public class RenderableFactory {
     public static Renderable createQuad(float x, float y, float z,
                                         float w, float h,
                                         URL texture, Rectangle crop) {
+        return createQuad(x, y, z, w, h, texture, crop, 0);
+    }
+
+    /**
+     * Creates a quad whose texture is decoded from the cropped region of
+     * <code>texture</code>, subsampled down to about
+     * <code>maxTextureWidth</code> pixels wide. A width of 0 or less decodes
+     * the region at full resolution.
+     */
+    public static Renderable createQuad(float x, float y, float z,
+                                        float w, float h,
+                                        URL texture, Rectangle crop,
+                                        int maxTextureWidth) {
         try {
-            BufferedImage image = ImageIO.read(texture);
-            return createQuad(x, y, z, w, h, image, crop);
+            BufferedImage image = ImageDecoder.read(texture, crop, maxTextureWidth, 0);
+            return createQuad(x, y, z, w, h, image, null);
         } catch (IOException e) {
         }
         
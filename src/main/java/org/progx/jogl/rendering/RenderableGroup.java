@@ -0,0 +1,157 @@
+package org.progx.jogl.rendering;
+
+import com.jogamp.opengl.GL2;
+import org.progx.jogl.MatrixState;
+import org.progx.jogl.util.DepthSorter;
+import org.progx.jogl.util.Frustum;
+
+/**
+ * A node of the scene graph holding a fixed number of children, any of which
+ * can be empty. Each child is drawn with its own transform applied on top of
+ * the transform of the group, so groups can be nested.
+ * <p>
+ * Children are drawn in order, or back to front when the group is depth
+ * sorted, which translucent children need to blend correctly. When culling
+ * is enabled, children whose bounding sphere lies outside of the view
+ * frustum are skipped. Groups have bounds enclosing their children, so that
+ * nesting groups culls whole branches at once.
+ */
+public class RenderableGroup extends Renderable {
+    private final Renderable[] children;
+    private final Renderable[] visible;
+    private DepthSorter sorter = null;
+    private Frustum frustum = null;
+    private int visibleCount = 0;
+
+    public RenderableGroup(int size) {
+        children = new Renderable[size];
+        visible = new Renderable[size];
+    }
+
+    public int size() {
+        return children.length;
+    }
+
+    public Renderable get(int index) {
+        return children[index];
+    }
+
+    public void set(int index, Renderable child) {
+        children[index] = child;
+    }
+
+    public boolean isDepthSorted() {
+        return sorter != null;
+    }
+
+    public void setDepthSorted(boolean depthSorted) {
+        if (depthSorted != isDepthSorted()) {
+            sorter = depthSorted ? new DepthSorter() : null;
+        }
+    }
+
+    public boolean isCulling() {
+        return frustum != null;
+    }
+
+    /**
+     * Sets whether children outside of the view frustum are skipped. The
+     * frustum is taken from the projection and modelview matrices tracked by
+     * the {@link MatrixState} of the context when the group is rendered.
+     */
+    public void setCulling(boolean culling) {
+        if (culling != isCulling()) {
+            frustum = culling ? new Frustum() : null;
+        }
+    }
+
+    /**
+     * Returns the number of children drawn by the last rendering.
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Returns the radius enclosing the bounding spheres of all the children,
+     * placed by their transforms.
+     */
+    @Override
+    public float getBoundingRadius() {
+        float radius = 0.0f;
+        for (Renderable child: children) {
+            if (child == null) {
+                continue;
+            }
+            float[] m = child.getTransform();
+            float distance = (float) Math.sqrt(m[12] * m[12] + m[13] * m[13] + m[14] * m[14]);
+            radius = Math.max(radius, distance + child.getBoundingRadius() * child.getMaxScale());
+        }
+        return radius;
+    }
+
+    @Override
+    public void init(GL2 gl) {
+        for (Renderable child: children) {
+            if (child != null) {
+                child.init(gl);
+            }
+        }
+    }
+
+    @Override
+    public void dispose(GL2 gl) {
+        for (Renderable child: children) {
+            if (child != null) {
+                child.dispose(gl);
+            }
+        }
+    }
+
+    @Override
+    public void render(GL2 gl) {
+        MatrixState state = MatrixState.get(gl);
+        if (frustum != null) {
+            frustum.set(state.getProjection(), state.getModelView());
+        }
+
+        visibleCount = 0;
+        for (int i = 0; i < children.length; i++) {
+            Renderable child = children[i];
+            if (child != null && frustum != null && !isInFrustum(child)) {
+                child = null;
+            }
+            if (child != null) {
+                visibleCount++;
+            }
+            visible[i] = child;
+        }
+
+        if (sorter != null) {
+            // sorted before any child changes the modelview matrix
+            int count = sorter.sort(state.getModelView(), visible, visible.length);
+            for (int i = 0; i < count; i++) {
+                renderChild(gl, state, visible[sorter.get(i)]);
+            }
+        } else {
+            for (Renderable child: visible) {
+                if (child != null) {
+                    renderChild(gl, state, child);
+                }
+            }
+        }
+    }
+
+    private boolean isInFrustum(Renderable child) {
+        float[] m = child.getTransform();
+        return frustum.intersectsSphere(m[12], m[13], m[14],
+                                        child.getBoundingRadius() * child.getMaxScale());
+    }
+
+    private static void renderChild(GL2 gl, MatrixState state, Renderable child) {
+        state.push();
+        state.multiply(gl, child.getTransform());
+        child.render(gl);
+        state.pop(gl);
+    }
+}
@@ -0,0 +1,212 @@
+package org.progx.jogl.util;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compresses opaque images to S3TC DXT1 blocks, the format GL calls
+ * <code>GL_COMPRESSED_RGB_S3TC_DXT1_EXT</code>. Each 4x4 block of pixels is
+ * stored in 8 bytes, two RGB565 end points and a 2 bits index per pixel, a
+ * sixth of the size of the same pixels as RGB bytes.
+ * <p>
+ * End points are picked from the bounding box of the block colors, slightly
+ * inset, which is fast and good enough for photographs. Encoding a large
+ * image takes a while and should never be done on the render thread.
+ */
+public class DXT1Encoder {
+    private DXT1Encoder() {
+    }
+
+    /**
+     * Returns the number of bytes taken by a compressed image of the given
+     * size.
+     */
+    public static int getSize(int width, int height) {
+        return ((width + 3) / 4) * ((height + 3) / 4) * 8;
+    }
+
+    /**
+     * Returns the number of bytes taken by a compressed image of the given
+     * size and all its mipmap levels, down to 1x1.
+     */
+    public static int getMipmappedSize(int width, int height) {
+        int size = getSize(width, height);
+        while (width > 1 || height > 1) {
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+            size += getSize(width, height);
+        }
+        return size;
+    }
+
+    /**
+     * Compresses the image, followed by all its mipmap levels when
+     * <code>mipmaps</code> is true. Levels are halved with a box filter and
+     * stored one after the other, the largest first.
+     */
+    public static ByteBuffer encode(BufferedImage image, boolean mipmaps) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        int size = mipmaps ? getMipmappedSize(width, height) : getSize(width, height);
+        ByteBuffer blocks = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        encode(pixels, width, height, blocks);
+
+        if (mipmaps) {
+            while (width > 1 || height > 1) {
+                int halfWidth = Math.max(1, width / 2);
+                int halfHeight = Math.max(1, height / 2);
+                // halving in place is safe since reads are always ahead of writes
+                halve(pixels, width, height, halfWidth, halfHeight);
+                width = halfWidth;
+                height = halfHeight;
+                encode(pixels, width, height, blocks);
+            }
+        }
+
+        blocks.flip();
+        return blocks;
+    }
+
+    /**
+     * Compresses ARGB pixels, appending the blocks to the buffer. The buffer
+     * must be in little endian order.
+     */
+    public static void encode(int[] pixels, int width, int height, ByteBuffer blocks) {
+        int[] block = new int[16];
+        for (int by = 0; by < height; by += 4) {
+            for (int bx = 0; bx < width; bx += 4) {
+                // blocks hanging over the edges repeat the last row and column
+                for (int y = 0; y < 4; y++) {
+                    int row = Math.min(by + y, height - 1) * width;
+                    for (int x = 0; x < 4; x++) {
+                        block[y * 4 + x] = pixels[row + Math.min(bx + x, width - 1)];
+                    }
+                }
+                encodeBlock(block, blocks);
+            }
+        }
+    }
+
+    private static void encodeBlock(int[] block, ByteBuffer blocks) {
+        int minR = 255, minG = 255, minB = 255;
+        int maxR = 0, maxG = 0, maxB = 0;
+        int sumR = 0, sumG = 0, sumB = 0;
+        for (int pixel: block) {
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            minR = Math.min(minR, r); maxR = Math.max(maxR, r);
+            minG = Math.min(minG, g); maxG = Math.max(maxG, g);
+            minB = Math.min(minB, b); maxB = Math.max(maxB, b);
+            sumR += r; sumG += g; sumB += b;
+        }
+
+        // the box diagonal should follow the colors, flips the channels
+        // that vary against red
+        long covG = 0, covB = 0;
+        for (int pixel: block) {
+            int r = ((pixel >> 16) & 0xFF) * 16 - sumR;
+            covG += r * (((pixel >> 8) & 0xFF) * 16 - sumG);
+            covB += r * ((pixel & 0xFF) * 16 - sumB);
+        }
+        if (covG < 0) {
+            int t = minG; minG = maxG; maxG = t;
+        }
+        if (covB < 0) {
+            int t = minB; minB = maxB; maxB = t;
+        }
+
+        // insets the end points to reduce the error in the middle of the box
+        int insetR = (maxR - minR) / 16;
+        int insetG = (maxG - minG) / 16;
+        int insetB = (maxB - minB) / 16;
+        int color0 = toRGB565(maxR - insetR, maxG - insetG, maxB - insetB);
+        int color1 = toRGB565(minR + insetR, minG + insetG, minB + insetB);
+
+        // the four colors mode requires color0 > color1
+        if (color0 < color1) {
+            int t = color0; color0 = color1; color1 = t;
+        }
+
+        int indices = 0;
+        if (color0 != color1) {
+            int[] palette = new int[4];
+            palette[0] = fromRGB565(color0);
+            palette[1] = fromRGB565(color1);
+            palette[2] = mix(palette[0], palette[1]);
+            palette[3] = mix(palette[1], palette[0]);
+
+            for (int i = 15; i >= 0; i--) {
+                indices = (indices << 2) | getNearest(palette, block[i]);
+            }
+        }
+
+        blocks.putShort((short) color0);
+        blocks.putShort((short) color1);
+        blocks.putInt(indices);
+    }
+
+    private static int getNearest(int[] palette, int pixel) {
+        int nearest = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int dr = ((palette[i] >> 16) & 0xFF) - ((pixel >> 16) & 0xFF);
+            int dg = ((palette[i] >> 8) & 0xFF) - ((pixel >> 8) & 0xFF);
+            int db = (palette[i] & 0xFF) - (pixel & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private static int toRGB565(int r, int g, int b) {
+        return ((r * 31 + 127) / 255) << 11 | ((g * 63 + 127) / 255) << 5 | ((b * 31 + 127) / 255);
+    }
+
+    private static int fromRGB565(int color) {
+        int r = (color >> 11) & 0x1F;
+        int g = (color >> 5) & 0x3F;
+        int b = color & 0x1F;
+        return (r << 3 | r >> 2) << 16 | (g << 2 | g >> 4) << 8 | (b << 3 | b >> 2);
+    }
+
+    // two thirds of c0 and one third of c1
+    private static int mix(int c0, int c1) {
+        int r = (2 * ((c0 >> 16) & 0xFF) + ((c1 >> 16) & 0xFF)) / 3;
+        int g = (2 * ((c0 >> 8) & 0xFF) + ((c1 >> 8) & 0xFF)) / 3;
+        int b = (2 * (c0 & 0xFF) + (c1 & 0xFF)) / 3;
+        return r << 16 | g << 8 | b;
+    }
+
+    private static void halve(int[] pixels, int width, int height,
+                              int halfWidth, int halfHeight) {
+        for (int y = 0; y < halfHeight; y++) {
+            int row0 = Math.min(y * 2, height - 1) * width;
+            int row1 = Math.min(y * 2 + 1, height - 1) * width;
+            for (int x = 0; x < halfWidth; x++) {
+                int x0 = Math.min(x * 2, width - 1);
+                int x1 = Math.min(x * 2 + 1, width - 1);
+                int p0 = pixels[row0 + x0];
+                int p1 = pixels[row0 + x1];
+                int p2 = pixels[row1 + x0];
+                int p3 = pixels[row1 + x1];
+
+                // sums two channels at once in 16 bits lanes
+                int ag = ((p0 >>> 8) & 0x00FF00FF) + ((p1 >>> 8) & 0x00FF00FF) +
+                         ((p2 >>> 8) & 0x00FF00FF) + ((p3 >>> 8) & 0x00FF00FF);
+                int rb = (p0 & 0x00FF00FF) + (p1 & 0x00FF00FF) +
+                         (p2 & 0x00FF00FF) + (p3 & 0x00FF00FF);
+
+                pixels[y * halfWidth + x] = ((((ag + 0x00020002) >>> 2) & 0x00FF00FF) << 8) |
+                                            (((rb + 0x00020002) >>> 2) & 0x00FF00FF);
+            }
+        }
+    }
+}
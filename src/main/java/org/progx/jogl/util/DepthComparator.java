@@ -6,40 +6,53 @@ import com.jogamp.opengl.GL2;
 import org.jogamp.vecmath.Matrix4f;
 import org.jogamp.vecmath.Point3f;
 
+import org.progx.jogl.MatrixState;
 import org.progx.jogl.rendering.Renderable;
 
 
 public class DepthComparator implements Comparator<Renderable> {
     private Point3f camPos;
     private Matrix4f view;
+    // compare() is called many times per sort, points are reused
+    private final Point3f p1 = new Point3f();
+    private final Point3f p2 = new Point3f();
 
     public DepthComparator(GL2 gl) {
-        float[] matrix = new float[16];
-        gl.glGetFloatv(GL2.GL_MODELVIEW_MATRIX, matrix, 0);
+        this(MatrixState.get(gl).getModelView());
+    }
+
+    /**
+     * Creates a comparator for items drawn with the given modelview matrix,
+     * in column-major order.
+     */
+    public DepthComparator(float[] matrix) {
         camPos = new Point3f(-matrix[12], -matrix[13], -matrix[14]);
         view = new Matrix4f(matrix);
         view.transpose();
     }
 
     public int compare(Renderable r1, Renderable r2) {
+        // checked first so that two nulls are equal
+        if (r1 == r2) {
+            return 0;
+        }
         if (r1 == null) {
             return -1;
         }
         if (r2 == null) {
             return 1;
         }
-        if (r1 == r2) {
-            return 0;
-        }
         
-        Point3f p1 = r1.getPosition();
+        r1.getPosition(p1);
         view.transform(p1);
         float distance1 = camPos.distance(p1);
         
-        Point3f p2 = r2.getPosition();
+        r2.getPosition(p2);
         view.transform(p2);
         float distance2 = camPos.distance(p2);
         
-        return (int) (distance2 - distance1);
+        // farthest first; casting the difference would make items closer
+        // than a unit equal and break the comparator contract
+        return Float.compare(distance2, distance1);
     }
 }
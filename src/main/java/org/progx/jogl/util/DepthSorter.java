@@ -0,0 +1,92 @@
+package org.progx.jogl.util;
+
+import java.util.Arrays;
+
+import org.progx.jogl.rendering.Renderable;
+
+/**
+ * Sorts renderables back to front so that translucent items composite in
+ * the right order. The view depth of each item is computed once per sort,
+ * then the depths and the item indices are packed into longs sorted as
+ * primitives. Arrays are kept from one sort to the next, so sorting does not
+ * allocate once they are large enough.
+ * <p>
+ * Sorters are not thread safe.
+ */
+public class DepthSorter {
+    private float[] depths = new float[0];
+    private long[] keys = new long[0];
+    private int[] order = new int[0];
+    private int count = 0;
+
+    /**
+     * Sorts the first <code>length</code> items, given the modelview matrix
+     * in which their transforms apply, in column-major order. Null items are
+     * skipped. Returns the number of sorted items.
+     */
+    public int sort(float[] modelView, Renderable[] items, int length) {
+        ensureCapacity(length);
+
+        count = 0;
+        for (int i = 0; i < length; i++) {
+            Renderable item = items[i];
+            if (item == null) {
+                continue;
+            }
+
+            // the origin of the item, in the parent space, is the translation
+            // of its transform; only its view Z matters
+            float[] m = item.getTransform();
+            float depth = modelView[2] * m[12] + modelView[6] * m[13] +
+                          modelView[10] * m[14] + modelView[14];
+            depths[i] = depth;
+            keys[count++] = ((long) toSortableBits(depth) << 32) | i;
+        }
+
+        // the view looks down -Z, so ascending depths go back to front
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of items sorted by the last sort.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the index, in the sorted array, of the item drawn at the given
+     * rank, 0 being the farthest.
+     */
+    public int get(int rank) {
+        return order[rank];
+    }
+
+    /**
+     * Returns the view depth of the item at the given index, as computed by
+     * the last sort. Depths are negative in front of the camera.
+     */
+    public float getDepth(int index) {
+        return depths[index];
+    }
+
+    private void ensureCapacity(int length) {
+        if (depths.length < length) {
+            depths = new float[length];
+            keys = new long[length];
+            order = new int[length];
+        }
+    }
+
+    /**
+     * Maps a float to an int whose signed order is the order of the floats.
+     */
+    static int toSortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+}
@@ -0,0 +1,152 @@
+package org.progx.jogl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycles the direct buffers used to stage pixels on their way to GL.
+ * Direct memory is only given back to the system once the garbage collector
+ * finalizes the buffers, so allocating one per upload makes native memory
+ * grow quickly when textures are replaced in rapid succession.
+ * <p>
+ * Buffers are sorted in size classes of powers of two. A released buffer is
+ * kept for the next request of its class as long as the retained bytes stay
+ * under a cap, set in megabytes by <code>twinkle.buffers.size</code> and
+ * 64 MB by default. Buffers are handed out in native byte order.
+ */
+public class DirectBufferPool {
+    public static final long DEFAULT_CAPACITY =
+        Long.getLong("twinkle.buffers.size", 64) * 1024 * 1024;
+
+    private static final int MIN_CLASS = 12;
+    private static final int MAX_CLASS = 30;
+
+    private static final DirectBufferPool shared = new DirectBufferPool(DEFAULT_CAPACITY);
+
+    private final long capacity;
+    private final List<List<ByteBuffer>> free;
+
+    private long retained = 0;
+    private long outstanding = 0;
+    private long peak = 0;
+
+    private long requests = 0;
+    private long hits = 0;
+
+    public DirectBufferPool(long capacity) {
+        this.capacity = capacity;
+        free = new ArrayList<List<ByteBuffer>>(MAX_CLASS + 1);
+        for (int i = 0; i <= MAX_CLASS; i++) {
+            free.add(new ArrayList<ByteBuffer>());
+        }
+    }
+
+    /**
+     * Returns the pool shared by all the textures.
+     */
+    public static DirectBufferPool getShared() {
+        return shared;
+    }
+
+    /**
+     * Returns a cleared direct buffer whose limit is <code>size</code>. The
+     * buffer should be given back with <code>release</code> once GL is done
+     * reading from it.
+     */
+    public synchronized ByteBuffer acquire(int size) {
+        requests++;
+
+        int sizeClass = getSizeClass(size);
+        ByteBuffer buffer;
+        if (sizeClass > MAX_CLASS) {
+            buffer = allocate(size);
+        } else {
+            List<ByteBuffer> buffers = free.get(sizeClass);
+            if (buffers.isEmpty()) {
+                buffer = allocate(1 << sizeClass);
+            } else {
+                buffer = buffers.remove(buffers.size() - 1);
+                retained -= buffer.capacity();
+                hits++;
+            }
+        }
+
+        outstanding += buffer.capacity();
+        peak = Math.max(peak, outstanding + retained);
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer obtained from <code>acquire</code> back to the pool. It
+     * is dropped if keeping it would go over the capacity of the pool.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        outstanding -= buffer.capacity();
+
+        int sizeClass = Integer.numberOfTrailingZeros(buffer.capacity());
+        if (Integer.bitCount(buffer.capacity()) != 1 || sizeClass < MIN_CLASS ||
+            sizeClass > MAX_CLASS || retained + buffer.capacity() > capacity) {
+            return;
+        }
+
+        free.get(sizeClass).add(buffer);
+        retained += buffer.capacity();
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    private static int getSizeClass(int size) {
+        if (size <= 1 << MIN_CLASS) {
+            return MIN_CLASS;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Drops all the retained buffers.
+     */
+    public synchronized void clear() {
+        for (List<ByteBuffer> buffers: free) {
+            buffers.clear();
+        }
+        retained = 0;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getRetainedBytes() {
+        return retained;
+    }
+
+    /**
+     * Returns the largest number of bytes held at once by buffers of this
+     * pool, whether handed out or retained.
+     */
+    public synchronized long getPeakBytes() {
+        return peak;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("buffers    %d requests, %d hits, %.1f MB retained, %.1f MB peak%n",
+                             requests, hits, retained / (1024.0 * 1024.0),
+                             peak / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,75 @@
+package org.progx.jogl.util;
+
+/**
+ * The six planes of a view frustum, used to skip drawing what cannot be
+ * seen. Planes are extracted from the product of the projection and
+ * modelview matrices, so they are expressed in the space in which the
+ * modelview matrix applies: testing a bounding sphere needs no further
+ * transform.
+ */
+public class Frustum {
+    // left, right, bottom, top, near and far planes; a, b, c, d each
+    private final float[] planes = new float[24];
+    // projection * modelView, row by row
+    private final float[] clip = new float[16];
+
+    /**
+     * Extracts the planes from the given matrices, in column-major order.
+     */
+    public void set(float[] projection, float[] modelView) {
+        for (int row = 0; row < 4; row++) {
+            float c0 = 0.0f, c1 = 0.0f, c2 = 0.0f, c3 = 0.0f;
+            for (int k = 0; k < 4; k++) {
+                float p = projection[k * 4 + row];
+                c0 += p * modelView[k];
+                c1 += p * modelView[4 + k];
+                c2 += p * modelView[8 + k];
+                c3 += p * modelView[12 + k];
+            }
+            clip[row * 4] = c0;
+            clip[row * 4 + 1] = c1;
+            clip[row * 4 + 2] = c2;
+            clip[row * 4 + 3] = c3;
+        }
+
+        // each plane is the fourth row plus or minus one of the others
+        for (int i = 0; i < 6; i++) {
+            int row = i / 2;
+            float sign = i % 2 == 0 ? 1.0f : -1.0f;
+            float a = clip[12] + sign * clip[row * 4];
+            float b = clip[13] + sign * clip[row * 4 + 1];
+            float c = clip[14] + sign * clip[row * 4 + 2];
+            float d = clip[15] + sign * clip[row * 4 + 3];
+
+            // normalized so that plane equations give distances
+            float length = (float) Math.sqrt(a * a + b * b + c * c);
+            if (length > 0.0f) {
+                a /= length;
+                b /= length;
+                c /= length;
+                d /= length;
+            }
+            planes[i * 4] = a;
+            planes[i * 4 + 1] = b;
+            planes[i * 4 + 2] = c;
+            planes[i * 4 + 3] = d;
+        }
+    }
+
+    /**
+     * Returns true when the sphere is at least partly inside the frustum.
+     */
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        if (Float.isInfinite(radius)) {
+            return true;
+        }
+
+        for (int i = 0; i < 24; i += 4) {
+            float distance = planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+            if (distance < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package org.progx.jogl.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes images no larger than what they will be displayed at. Source
+ * subsampling lets the decoder skip pixels instead of producing a full size
+ * raster that would be scaled down right away.
+ */
+public class ImageDecoder {
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decodes the whole image.
+     */
+    public static BufferedImage read(URL source) throws IOException {
+        return read(source, null, 0, 0);
+    }
+
+    /**
+     * Decodes the image, subsampled so that it is not much larger than
+     * <code>maxWidth</code> by <code>maxHeight</code>. The decoded image is
+     * never smaller than the requested size unless the source is. A size of 0
+     * or less means no limit on that axis.
+     */
+    public static BufferedImage read(URL source, int maxWidth, int maxHeight) throws IOException {
+        return read(source, null, maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes the given region of the image, subsampled so that it is not
+     * much larger than <code>maxWidth</code> by <code>maxHeight</code>. When
+     * <code>region</code> is null the whole image is decoded.
+     */
+    public static BufferedImage read(URL source, Rectangle region,
+                                     int maxWidth, int maxHeight) throws IOException {
+        return read(source, region, maxWidth, maxHeight, false);
+    }
+
+    /**
+     * Decodes the image, subsampled if needed so that neither of its
+     * dimensions is larger than <code>maxSize</code>.
+     */
+    public static BufferedImage readToFit(URL source, int maxSize) throws IOException {
+        return read(source, null, maxSize, maxSize, true);
+    }
+
+    private static BufferedImage read(URL source, Rectangle region,
+                                      int maxWidth, int maxHeight,
+                                      boolean fit) throws IOException {
+        InputStream in = source.openStream();
+        try {
+            ImageInputStream stream = ImageIO.createImageInputStream(in);
+            if (stream == null) {
+                throw new IOException("Cannot read " + source);
+            }
+
+            try {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+                if (!readers.hasNext()) {
+                    throw new IOException("No decoder found for " + source);
+                }
+
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(stream, true, true);
+                    ImageReadParam param = reader.getDefaultReadParam();
+
+                    int width = reader.getWidth(0);
+                    int height = reader.getHeight(0);
+                    if (region != null) {
+                        region = region.intersection(new Rectangle(0, 0, width, height));
+                        param.setSourceRegion(region);
+                        width = region.width;
+                        height = region.height;
+                    }
+
+                    int subsampling = fit ? getFittingSubsampling(width, height, maxWidth, maxHeight)
+                                          : getSubsampling(width, height, maxWidth, maxHeight);
+                    if (subsampling > 1) {
+                        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    }
+
+                    return reader.read(0, param);
+                } finally {
+                    reader.dispose();
+                }
+            } finally {
+                stream.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the largest subsampling factor that keeps an image of the given
+     * size at least as large as <code>maxWidth</code> by
+     * <code>maxHeight</code>.
+     */
+    public static int getSubsampling(int width, int height, int maxWidth, int maxHeight) {
+        int subsampling = Integer.MAX_VALUE;
+        if (maxWidth > 0) {
+            subsampling = Math.min(subsampling, width / maxWidth);
+        }
+        if (maxHeight > 0) {
+            subsampling = Math.min(subsampling, height / maxHeight);
+        }
+        if (subsampling == Integer.MAX_VALUE) {
+            return 1;
+        }
+        return Math.max(1, subsampling);
+    }
+
+    /**
+     * Returns the smallest subsampling factor that makes an image of the given
+     * size fit in <code>maxWidth</code> by <code>maxHeight</code>.
+     */
+    public static int getFittingSubsampling(int width, int height, int maxWidth, int maxHeight) {
+        int subsampling = 1;
+        if (maxWidth > 0) {
+            subsampling = Math.max(subsampling, (width + maxWidth - 1) / maxWidth);
+        }
+        if (maxHeight > 0) {
+            subsampling = Math.max(subsampling, (height + maxHeight - 1) / maxHeight);
+        }
+        return subsampling;
+    }
+}
@@ -0,0 +1,89 @@
+package org.progx.jogl.util;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs rectangles into a larger area, typically a texture atlas, using
+ * shelves: rectangles are placed left to right on horizontal shelves whose
+ * height is set by the first rectangle placed on them. Shelves are most
+ * efficient when the packed rectangles have similar heights, as thumbnails
+ * do.
+ * <p>
+ * Space is never reclaimed for individual rectangles; the whole area is
+ * emptied with <code>clear</code>.
+ */
+public class RectanglePacker {
+    private final int width;
+    private final int height;
+    private final int padding;
+
+    private final List<Shelf> shelves = new ArrayList<Shelf>();
+    private int top = 0;
+
+    /**
+     * Creates a packer for an area of the given size. <code>padding</code>
+     * empty pixels are kept between packed rectangles.
+     */
+    public RectanglePacker(int width, int height, int padding) {
+        this.width = width;
+        this.height = height;
+        this.padding = padding;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Finds room for a rectangle of the given size. Returns its location in
+     * the area, or null when it does not fit anymore.
+     */
+    public Rectangle insert(int w, int h) {
+        int paddedWidth = w + padding;
+        int paddedHeight = h + padding;
+
+        // picks the shortest shelf the rectangle fits in to waste less space
+        Shelf best = null;
+        for (Shelf shelf: shelves) {
+            if (shelf.height >= paddedHeight && shelf.x + paddedWidth <= width &&
+                (best == null || shelf.height < best.height)) {
+                best = shelf;
+            }
+        }
+
+        if (best == null) {
+            if (top + paddedHeight > height || paddedWidth > width) {
+                return null;
+            }
+            best = new Shelf(top, paddedHeight);
+            shelves.add(best);
+            top += paddedHeight;
+        }
+
+        Rectangle location = new Rectangle(best.x, best.y, w, h);
+        best.x += paddedWidth;
+        return location;
+    }
+
+    public void clear() {
+        shelves.clear();
+        top = 0;
+    }
+
+    private static final class Shelf {
+        private final int y;
+        private final int height;
+        private int x = 0;
+
+        private Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.progx.twinkle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.progx.twinkle.ui.Picture;
+import org.progx.twinkle.ui.PictureViewer;
+import org.progx.twinkle.ui.PipelineStatistics;
+import org.progx.twinkle.ui.PipelineStatistics.Stage;
+
+/**
+ * Loads the pictures listed in a catalogue and hands them to a
+ * <code>PictureViewer</code>. Pictures are decoded in parallel by a pool of
+ * decoders but are always added to the viewer in catalogue order.
+ * <p>
+ * The pool size is set by <code>twinkle.loader.threads</code> (defaults to
+ * the number of cores) and the number of pictures decoded ahead of the viewer
+ * by <code>twinkle.loader.inflight</code> (defaults to twice the pool size).
+ * Per-stage timings are printed when <code>twinkle.loader.stats</code> is set.
+ */
+public class PicturesLoader implements Runnable {
+    private static final int DECODERS =
+        Math.max(1, Integer.getInteger("twinkle.loader.threads",
+                                       Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_IN_FLIGHT =
+        Math.max(1, Integer.getInteger("twinkle.loader.inflight", DECODERS * 2));
+    private static final boolean REPORT =
+        System.getProperty("twinkle.loader.stats") != null || Debug.isDebug();
+
+    private final PictureViewer viewer;
+    private final URL catalogue;
+
+    public PicturesLoader(PictureViewer viewer, URL catalogue) {
+        this.viewer = viewer;
+        this.catalogue = catalogue;
+    }
+
+    public void run() {
+        Properties props = new Properties();
+
+        try {
+            InputStream in = catalogue.openStream();
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        int count = Integer.parseInt(props.getProperty("photos.count"));
+
+        // the streams we decode from are in memory or on disk already
+        ImageIO.setUseCache(false);
+
+        ExecutorService decoders = Executors.newFixedThreadPool(DECODERS,
+                                                                new DecoderThreadFactory());
+        LinkedList<Future<Picture>> pending = new LinkedList<Future<Picture>>();
+        long start = System.nanoTime();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                if (pending.size() >= MAX_IN_FLIGHT) {
+                    deliver(pending.removeFirst());
+                }
+
+                String name = props.getProperty("photo." + i + ".name");
+                String path = props.getProperty("photo." + i + ".path");
+                pending.addLast(decoders.submit(new DecodeTask(name, path)));
+            }
+
+            while (!pending.isEmpty()) {
+                deliver(pending.removeFirst());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            decoders.shutdownNow();
+        }
+
+        if (REPORT) {
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Loaded %d pictures in %.1f ms with %d decoders%n",
+                              count, elapsed / 1000000.0, DECODERS);
+            System.out.print(viewer.getStatistics());
+            System.out.print(viewer.getPictureCache());
+        }
+    }
+
+    private void deliver(Future<Picture> result) throws InterruptedException {
+        try {
+            Picture picture = result.get();
+            if (picture != null) {
+                viewer.addPicture(picture);
+            }
+        } catch (ExecutionException e) {
+            viewer.getStatistics().recordFailure();
+            if (REPORT) {
+                System.out.printf("Could not load a picture: %s%n", e.getCause());
+            }
+        }
+    }
+
+    private final class DecodeTask implements Callable<Picture> {
+        private final String name;
+        private final String path;
+
+        private DecodeTask(String name, String path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        public Picture call() {
+            PipelineStatistics statistics = viewer.getStatistics();
+            URL source = PicturesLoader.class.getResource(path);
+            if (source == null) {
+                statistics.recordFailure();
+                return null;
+            }
+
+            Picture picture = new Picture(name, source, PictureViewer.PREVIEW_WIDTH,
+                                          viewer.getPictureCache(),
+                                          viewer.getThumbnailStore());
+
+            // pictures seen before have their thumbnail and size on disk
+            if (!picture.hasThumbnail(PictureViewer.THUMBNAIL_SIZE)) {
+                long start = System.nanoTime();
+                if (picture.getImage() == null) {
+                    statistics.recordFailure();
+                    return null;
+                }
+                statistics.record(Stage.DECODE, System.nanoTime() - start);
+            }
+
+            long start = System.nanoTime();
+            if (picture.getThumbnail(PictureViewer.THUMBNAIL_SIZE) == null) {
+                statistics.recordFailure();
+                return null;
+            }
+            statistics.record(Stage.THUMBNAIL, System.nanoTime() - start);
+
+            return picture;
+        }
+    }
+
+    private static final class DecoderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Pictures Decoder " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
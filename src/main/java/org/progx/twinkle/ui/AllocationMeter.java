@@ -0,0 +1,86 @@
+package org.progx.twinkle.ui;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by the render thread while drawing a frame,
+ * which should be none once the scene is steady. The viewer reports it when
+ * <code>twinkle.debug.allocations</code> is set. Relies on the HotSpot
+ * extension of <code>ThreadMXBean</code>; on other VMs nothing is measured.
+ * <p>
+ * <code>begin</code> and <code>end</code> must be called from the same
+ * thread.
+ */
+public class AllocationMeter {
+    private final com.sun.management.ThreadMXBean threads;
+
+    private long start;
+    private long lastFrame = 0;
+    private long maxFrame = 0;
+    private long frames = 0;
+    private long total = 0;
+
+    public AllocationMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+
+    public boolean isSupported() {
+        return threads != null;
+    }
+
+    public void begin() {
+        if (threads != null) {
+            start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    public void end() {
+        if (threads == null) {
+            return;
+        }
+
+        lastFrame = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+        maxFrame = Math.max(maxFrame, lastFrame);
+        total += lastFrame;
+        frames++;
+    }
+
+    public long getLastFrameBytes() {
+        return lastFrame;
+    }
+
+    public long getMaxFrameBytes() {
+        return maxFrame;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public double getAverageFrameBytes() {
+        return frames == 0 ? 0.0 : (double) total / frames;
+    }
+
+    public void reset() {
+        lastFrame = 0;
+        maxFrame = 0;
+        frames = 0;
+        total = 0;
+    }
+
+    @Override
+    public String toString() {
+        if (threads == null) {
+            return String.format("allocations unavailable%n");
+        }
+        return String.format("allocations %7d bytes last frame, %9.1f average, %7d max%n",
+                             lastFrame, getAverageFrameBytes(), maxFrame);
+    }
+}
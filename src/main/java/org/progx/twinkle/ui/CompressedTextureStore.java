@@ -0,0 +1,180 @@
+package org.progx.twinkle.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.progx.jogl.CompressedImage;
+import org.progx.jogl.TextureCache;
+import org.progx.jogl.util.DXT1Encoder;
+
+/**
+ * Stores DXT1 compressed textures on disk, one file per texture, next to the
+ * thumbnails, named by the SHA-1 digest of their key. Images are compressed
+ * with all their mipmap levels on a background thread the first time they
+ * are shown, and memory-mapped by the same thread when they are needed
+ * again. Translucent images are not compressed.
+ * <p>
+ * DXT1 is lossy, so compression is off unless
+ * <code>twinkle.texture.compression</code> is set to true.
+ */
+public class CompressedTextureStore implements TextureCache {
+    public static final boolean ENABLED = Boolean.getBoolean("twinkle.texture.compression");
+
+    private static final int MAGIC = 0x44585431;
+    private static final String EXTENSION = ".dxt1";
+
+    private final File directory;
+    private final Set<String> pending =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ExecutorService encoder =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Texture Encoder");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+    public CompressedTextureStore(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private File getFile(String key) {
+        return new File(directory, digest(key) + EXTENSION);
+    }
+
+    private static String digest(String key) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-1 and UTF-8
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder name = new StringBuilder(hash.length * 2);
+        for (byte b: hash) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+        return name.toString();
+    }
+
+    public void get(final String key, final Listener listener) {
+        encoder.execute(new Runnable() {
+            public void run() {
+                listener.loaded(key, read(key));
+            }
+        });
+    }
+
+    private CompressedImage read(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                if (raf.readInt() != MAGIC) {
+                    return null;
+                }
+                int width = raf.readInt();
+                int height = raf.readInt();
+                boolean mipmapped = raf.readBoolean();
+                if (!key.equals(raf.readUTF())) {
+                    return null;
+                }
+
+                long offset = raf.getFilePointer();
+                int size = mipmapped ? DXT1Encoder.getMipmappedSize(width, height)
+                                     : DXT1Encoder.getSize(width, height);
+                if (offset + size > raf.length()) {
+                    return null;
+                }
+
+                // the mapping stays valid once the file is closed
+                ByteBuffer blocks = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                                         offset, size);
+                return new CompressedImage(width, height, mipmapped, blocks);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(final String key, final BufferedImage image) {
+        if (image.getColorModel().hasAlpha() || !pending.add(key)) {
+            return;
+        }
+
+        encoder.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (!getFile(key).isFile()) {
+                        write(key, image);
+                    }
+                } finally {
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    private void write(String key, BufferedImage image) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        ByteBuffer blocks = DXT1Encoder.encode(image, true);
+
+        File file = getFile(key);
+        File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(image.getWidth());
+                out.writeInt(image.getHeight());
+                out.writeBoolean(true);
+                out.writeUTF(key);
+                out.write(blocks.array(), blocks.arrayOffset(), blocks.remaining());
+            } finally {
+                out.close();
+            }
+
+            // readers never see partially written files
+            file.delete();
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            temp.delete();
+        }
+    }
+}
@@ -1,65 +1,201 @@
 package org.progx.twinkle.ui;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+
+import org.progx.jogl.util.ImageDecoder;
 
 public class Picture {
     private String name;
+    private URL source;
+    private int previewWidth;
+    private PictureCache cache;
+    private ThumbnailStore thumbnails;
+    private long lastModified = -1;
     private BufferedImage image;
+    private int width, height;
+    private volatile float ratio;
 
-    private BufferedImage thumb = null;
-    private int requestedThumbSize = 64;
+    private volatile ThumbnailPyramid pyramid = null;
 
     public Picture(String name, BufferedImage image) {
-        this.name = name;
+        this.name = name == null ? "" : name;
         this.image = image;
+        setSize(image.getWidth(), image.getHeight());
     }
 
-    public BufferedImage getThumbnail(int thumbWidth) {
-        if (thumbWidth >= image.getWidth()) {
-            return image;
+    /**
+     * Creates a picture decoded from <code>source</code> on demand. The image
+     * returned by <code>getImage</code> is subsampled down to about
+     * <code>previewWidth</code> pixels wide and kept in <code>cache</code>,
+     * which may evict it at any time; <code>readFullImage</code> decodes the
+     * original. Thumbnails are read from and saved to <code>thumbnails</code>
+     * when it is not null.
+     */
+    public Picture(String name, URL source, int previewWidth,
+                   PictureCache cache, ThumbnailStore thumbnails) {
+        this.name = name == null ? "" : name;
+        this.source = source;
+        this.previewWidth = previewWidth;
+        this.cache = cache;
+        this.thumbnails = thumbnails;
+    }
+
+    /**
+     * Returns a thumbnail at least <code>thumbWidth</code> pixels wide, or as
+     * wide as the picture if it is smaller. Thumbnails come from a pyramid
+     * built once from the largest requested width, so any smaller width is
+     * served without scaling.
+     */
+    public synchronized BufferedImage getThumbnail(int thumbWidth) {
+        if (isCoveredByPyramid(thumbWidth)) {
+            return pyramid.getLevel(thumbWidth);
         }
-        
-        if (thumbWidth != requestedThumbSize || thumb == null) {
-            requestedThumbSize = thumbWidth;
-            generateThumbnail();
+
+        String key = null;
+        if (thumbnails != null && source != null) {
+            key = getThumbnailKey(thumbWidth);
+            ThumbnailStore.Thumbnail stored = thumbnails.get(key);
+            if (stored != null) {
+                if (width == 0) {
+                    setSize(stored.getSourceWidth(), stored.getSourceHeight());
+                }
+                pyramid = ThumbnailPyramid.create(stored.getImage());
+                return pyramid.getLevel(thumbWidth);
+            }
         }
-        
-        return thumb;
+
+        BufferedImage image = getImage();
+        if (image == null) {
+            return null;
+        }
+
+        int baseWidth = Math.min(thumbWidth, image.getWidth());
+        int baseHeight = Math.max(1, (int) (baseWidth / getRatio()));
+        pyramid = ThumbnailPyramid.create(image, baseWidth, baseHeight);
+        if (key != null && baseWidth == thumbWidth) {
+            thumbnails.put(key, pyramid.getBase(), width, height);
+        }
+
+        return pyramid.getLevel(thumbWidth);
     }
-    
-    private void generateThumbnail() {
-        float ratio = getRatio();
-        int width = image.getWidth();
-        thumb = image;
-        
-        do {
-            width /= 2;
-            if (width < requestedThumbSize) {
-                width = requestedThumbSize;
-            }
-            
-            BufferedImage temp = new BufferedImage(width, (int) (width / ratio), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = temp.createGraphics();
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(thumb, 0, 0, temp.getWidth(), temp.getHeight(), null);
-            g2.dispose();
-
-            thumb = temp;
-        } while (width != requestedThumbSize);
+
+    /**
+     * Returns the thumbnail of the given width if it is ready, or null. Unlike
+     * <code>getThumbnail</code> this never blocks and is safe to call while
+     * painting.
+     */
+    public BufferedImage peekThumbnail(int thumbWidth) {
+        ThumbnailPyramid pyramid = this.pyramid;
+        if (pyramid != null && (thumbWidth <= pyramid.getWidth() || pyramid.getWidth() >= width)) {
+            return pyramid.getLevel(thumbWidth);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the thumbnail of the given width can be returned
+     * without decoding the picture.
+     */
+    public synchronized boolean hasThumbnail(int thumbWidth) {
+        if (isCoveredByPyramid(thumbWidth)) {
+            return true;
+        }
+        return thumbnails != null && source != null &&
+               thumbnails.contains(getThumbnailKey(thumbWidth));
+    }
+
+    private boolean isCoveredByPyramid(int thumbWidth) {
+        return pyramid != null &&
+               (thumbWidth <= pyramid.getWidth() || pyramid.getWidth() >= width);
+    }
+
+    private synchronized String getThumbnailKey(int thumbWidth) {
+        if (lastModified < 0) {
+            lastModified = ThumbnailStore.getLastModified(source);
+        }
+        return ThumbnailStore.getKey(source, lastModified, thumbWidth);
+    }
+
+    /**
+     * Returns the key identifying a texture made from an image of this
+     * picture with the given width, or null when the picture has no source.
+     */
+    public String getTextureKey(int imageWidth) {
+        if (source == null) {
+            return null;
+        }
+        return getThumbnailKey(imageWidth) + "#texture";
     }
 
-    public BufferedImage getImage() {
+    /**
+     * Returns the image displayed by the viewer, decoding it first if it is
+     * not in the cache. Returns null when the picture cannot be decoded.
+     */
+    public synchronized BufferedImage getImage() {
+        if (source == null) {
+            return image;
+        }
+
+        BufferedImage image = cache.get(this);
+        if (image == null) {
+            try {
+                image = ImageDecoder.read(source, previewWidth, 0);
+            } catch (IOException e) {
+                return null;
+            }
+            setSize(image.getWidth(), image.getHeight());
+            cache.put(this, image);
+        }
         return image;
     }
 
+    /**
+     * Returns the image displayed by the viewer if it is decoded already, or
+     * null. Unlike <code>getImage</code> this never decodes.
+     */
+    public BufferedImage peekImage() {
+        if (source == null) {
+            return image;
+        }
+        return cache.peek(this);
+    }
+
+    /**
+     * Decodes the picture at its original resolution, or subsampled to fit in
+     * <code>maxSize</code> pixels when it is larger than that. The result is
+     * not kept by the picture.
+     */
+    public BufferedImage readFullImage(int maxSize) throws IOException {
+        if (source == null) {
+            return getImage();
+        }
+        return ImageDecoder.readToFit(source, maxSize);
+    }
+
+    public URL getSource() {
+        return source;
+    }
+
     public String getName() {
         return name;
     }
 
+    private void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        ratio = (float) width / (float) height;
+    }
+
+    /**
+     * Returns the aspect ratio of the picture. It is known without decoding
+     * once the picture has been loaded or its thumbnail read from the store.
+     */
     public float getRatio() {
-        return (float) image.getWidth() / (float) image.getHeight();
+        if (ratio == 0.0f) {
+            getImage();
+        }
+        return ratio;
     }
 }
@@ -0,0 +1,138 @@
+package org.progx.twinkle.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps decoded picture images in memory within a byte budget. When the
+ * budget is exceeded the least recently used images are evicted, except for
+ * the pinned ones, and their pictures decode them again on demand.
+ * <p>
+ * The budget is set in megabytes by <code>twinkle.cache.size</code> and
+ * defaults to a quarter of the maximum heap size.
+ */
+public class PictureCache {
+    public static final long DEFAULT_BUDGET =
+        Long.getLong("twinkle.cache.size", Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024)) * 1024 * 1024;
+
+    private final long budget;
+    private long size = 0;
+
+    // access ordered, the eldest entry is the least recently used
+    private final LinkedHashMap<Picture, BufferedImage> images =
+        new LinkedHashMap<Picture, BufferedImage>(16, 0.75f, true);
+    private final Set<Picture> pinned = new HashSet<Picture>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public PictureCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    public PictureCache(long budget) {
+        this.budget = budget;
+    }
+
+    public synchronized BufferedImage get(Picture picture) {
+        BufferedImage image = images.get(picture);
+        if (image == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the image of the picture if it is in the cache, like
+     * <code>get</code>, without counting a hit or a miss.
+     */
+    public synchronized BufferedImage peek(Picture picture) {
+        return images.get(picture);
+    }
+
+    public synchronized void put(Picture picture, BufferedImage image) {
+        BufferedImage old = images.put(picture, image);
+        if (old != null) {
+            size -= getImageSize(old);
+        }
+        size += getImageSize(image);
+        evict();
+    }
+
+    /**
+     * Pins the images of the given pictures, typically the ones around the
+     * selected picture. Pinned images are never evicted, even when that
+     * means going over budget. Previously pinned pictures are released.
+     */
+    public synchronized void setPinned(Collection<Picture> pictures) {
+        pinned.clear();
+        pinned.addAll(pictures);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Picture, BufferedImage>> entries = images.entrySet().iterator();
+        while (size > budget && entries.hasNext()) {
+            Map.Entry<Picture, BufferedImage> entry = entries.next();
+            if (!pinned.contains(entry.getKey())) {
+                size -= getImageSize(entry.getValue());
+                entries.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        size = 0;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return images.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of bytes used by the pixels of the given image.
+     */
+    public static long getImageSize(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() *
+               DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache      %5d items, %6.1f/%.1f MB, %d hits, %d misses, %d evictions%n",
+                             images.size(), size / (1024.0 * 1024.0),
+                             budget / (1024.0 * 1024.0), hits, misses, evictions);
+    }
+}
@@ -23,17 +23,21 @@ import java.awt.event.MouseWheelListener;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.font.TextLayout;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -53,26 +57,45 @@ import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.glu.GLU;
 import org.jdesktop.swingx.util.ShadowFactory;
-import org.jogamp.vecmath.Point3f;
-import org.jogamp.vecmath.Point3i;
+import org.progx.jogl.AntiAliasing;
+import org.progx.jogl.Camera;
 import org.progx.jogl.CompositeGLPanel;
+import org.progx.jogl.CompressedImage;
 import org.progx.jogl.GLUtilities;
-import org.progx.jogl.rendering.ReflectedQuad;
+import org.progx.jogl.MatrixState;
+import org.progx.jogl.ProgressiveAccumulator;
+import org.progx.jogl.TextureCache;
+import org.progx.jogl.TextureStreamer;
+import org.progx.jogl.rendering.Pose;
+import org.progx.jogl.rendering.Quad;
 import org.progx.jogl.rendering.Renderable;
 import org.progx.jogl.rendering.RenderableFactory;
+import org.progx.jogl.rendering.RenderableGroup;
+import org.progx.jogl.util.DirectBufferPool;
 import org.progx.math.equation.Equation;
 import org.progx.twinkle.Debug;
 import org.progx.twinkle.equation.AnimationEquation;
+import org.progx.twinkle.ui.PipelineStatistics.Stage;
 
 public class PictureViewer extends CompositeGLPanel {
     public static final String KEY_ACTION_NEXT_PICTURE = "next";
     public static final String KEY_ACTION_PREVIOUS_PICTURE = "previous";
     public static final String KEY_ACTION_SHOW_PICTURE = "show";
     
-    private static boolean envAntiAliasing = false;
-    static {
-        envAntiAliasing = System.getProperty("twinkle.aa") != null;
-    }
+    // twinkle.aa selects the anti-aliasing mode, twinkle.aa.samples the
+    // number of samples per pixel, and twinkle.aa.progressive.samples the
+    // number of samples averaged over time by the progressive mode
+    private static final AntiAliasing ENV_ANTI_ALIASING =
+        AntiAliasing.fromProperty(System.getProperty("twinkle.aa"));
+    private static final int ANTI_ALIASING_SAMPLES =
+        Math.max(2, Integer.getInteger("twinkle.aa.samples", 4));
+    private static final int PROGRESSIVE_SAMPLES =
+        Math.max(2, Integer.getInteger("twinkle.aa.progressive.samples", 24));
+    
+    // twinkle.debug.allocations prints the bytes allocated by the render
+    // thread every ALLOCATION_REPORT_FRAMES frames, none once the scene is steady
+    private static final boolean REPORT_ALLOCATIONS = Boolean.getBoolean("twinkle.debug.allocations");
+    private static final int ALLOCATION_REPORT_FRAMES = 100;
     
     private static final float QUAD_WIDTH = 60.0f;
 
@@ -81,16 +104,53 @@ public class PictureViewer extends CompositeGLPanel {
     private static final double SELECTED_THUMB_RATIO = 0.35;
     private static final double SELECTED_THUMB_EXTRA_WIDTH = THUMB_WIDTH * SELECTED_THUMB_RATIO;
     
+    public static final int THUMBNAIL_SIZE = THUMB_WIDTH * 2;
+    // pictures are decoded at about the width a quad takes on a large screen
+    public static final int PREVIEW_WIDTH = Integer.getInteger("twinkle.preview.width", 1024);
+    
+    // number of pictures on each side of the strip whose thumbnails are prepared ahead
+    private static final int THUMB_PREFETCH = 16;
+    
     private static final int INDEX_LEFT_PICTURE = 0;
     private static final int INDEX_SELECTED_PICTURE = 1;
     private static final int INDEX_NEXT_PICTURE = 2;
     private static final int INDEX_RIGHT_PICTURE = 3;
 
     private List<Picture> pictures = Collections.synchronizedList(new ArrayList<Picture>());
-    private Renderable[] renderables = new Renderable[4];
+    private RenderableGroup renderables = new RenderableGroup(4);
+    private final Scene scene = new Scene();
+    private final Camera camera = new Camera();
+    private Picture[] stripPictures = new Picture[0];
+    private final Rectangle selectedFrameBounds = new Rectangle();
+    private final Rectangle nextFrameBounds = new Rectangle();
     
     private Queue<Renderable> initQuadsQueue = new ConcurrentLinkedQueue<Renderable>();
     private Queue<Renderable> disposeQuadsQueue = new ConcurrentLinkedQueue<Renderable>();
+    private Queue<Renderable> reloadQuadsQueue = new ConcurrentLinkedQueue<Renderable>();
+    
+    private int maxTextureSize = 2048;
+    private TextureStreamer textureStreamer = null;
+    private TextureCache textureCache = null;
+    
+    private PipelineStatistics statistics = new PipelineStatistics();
+    private AllocationMeter allocationMeter =
+        REPORT_ALLOCATIONS || Debug.isDebug() ? new AllocationMeter() : null;
+    private PictureCache pictureCache = new PictureCache();
+    private ThumbnailStore thumbnailStore = new ThumbnailStore();
+    private ThumbnailLoader thumbnailLoader = new ThumbnailLoader(THUMBNAIL_SIZE, new Runnable() {
+        public void run() {
+            invalidateScene();
+        }
+    });
+    // decodes the images of the pictures around the selection ahead of time
+    private final ExecutorService imageDecoder =
+        Executors.newSingleThreadExecutor(new ImageDecoderThreadFactory("Pictures Prefetcher"));
+    // decodes the picture shown at full resolution, one at a time
+    private final ExecutorService fullImageLoader =
+        Executors.newSingleThreadExecutor(new ImageDecoderThreadFactory("Full Picture Loader"));
+    private Future<?> fullImageTask = null;
+    // stands in for the quads whose image and thumbnail are not ready yet
+    private final BufferedImage placeholderImage = createSolidImage(new Color(0x2B2B2B));
 
     private float camPosX = 0.0f;
     private float camPosY = 0.0f;
@@ -100,12 +160,12 @@ public class PictureViewer extends CompositeGLPanel {
     
     private BufferedImage textImage = null;
     private BufferedImage nextTextImage = null;
-    private BufferedImage alphaMask;
     private ShadowFactory shadowFactory = new ShadowFactory(11, 1.0f, Color.BLACK);
     private Font textFont;
     private float textAlpha = 1.0f;
     private double animFactor = 0.0;
     private Color grayColor = new Color(0xE1E1E1);
+    private ThumbnailAtlas thumbnailAtlas = new ThumbnailAtlas(new Color(0x2B2B2B));
 
     private boolean next;
     private int selectedPicture = -1;
@@ -115,49 +175,109 @@ public class PictureViewer extends CompositeGLPanel {
     private Equation curve = new AnimationEquation(2.8, -0.98);//3.6, -1.0);
     private Timer animator;
     
-    private boolean antiAliasing = envAntiAliasing;
+    private AntiAliasing antiAliasing = ENV_ANTI_ALIASING;
+    private final ProgressiveAccumulator accumulator =
+        new ProgressiveAccumulator(PROGRESSIVE_SAMPLES);
     
     public PictureViewer() {
-        super(false, true);
+        // sample and accumulation buffers are requested whenever
+        // anti-aliasing is enabled, so that any mode can be selected at runtime
+        super(false, true,
+              ENV_ANTI_ALIASING != AntiAliasing.NONE ? ANTI_ALIASING_SAMPLES : 0,
+              ENV_ANTI_ALIASING != AntiAliasing.NONE);
+        setMultisampling(antiAliasing == AntiAliasing.MULTISAMPLE);
         setPreferredSize(new Dimension(640, 480));
         
         addMouseWheelListener(new MouseWheelDriver());
         
         setFocusable(true);
         registerActions();
+        
+        // reflections are blended and must be drawn back to front
+        renderables.setDepthSorted(true);
+        renderables.setCulling(true);
+
+        if (Boolean.getBoolean("twinkle.texture.streaming")) {
+            textureStreamer = new TextureStreamer(new Runnable() {
+                public void run() {
+                    invalidateScene();
+                }
+            });
+        }
+
+        if (CompressedTextureStore.ENABLED) {
+            textureCache = new CompressedTextureStore(new File(thumbnailStore.getDirectory(),
+                                                               "textures"));
+        }
 
         textFont = getFont().deriveFont(Font.BOLD, 32.0f);
-        alphaMask = createGradientMask(THUMB_WIDTH);
         
         createButtons();
     }
 
     public boolean isAntiAliasing() {
-        return antiAliasing;
+        return antiAliasing != AntiAliasing.NONE;
     }
 
+    /**
+     * Turns on the anti-aliasing mode set by <code>twinkle.aa</code>, if any,
+     * or turns anti-aliasing off.
+     */
     public void setAntiAliasing(boolean antiAliasing) {
-        this.antiAliasing = antiAliasing && envAntiAliasing;
-        repaint();
+        setAntiAliasingMode(antiAliasing ? ENV_ANTI_ALIASING : AntiAliasing.NONE);
     }
 
-    public void addPicture(String name, BufferedImage image) {
-        if (name == null) {
-            name = "";
-        }
+    public AntiAliasing getAntiAliasingMode() {
+        return antiAliasing;
+    }
+
+    /**
+     * Sets the anti-aliasing mode. Multisampling only works when
+     * <code>twinkle.aa</code> was set at startup and the framebuffer got
+     * sample buffers.
+     */
+    public void setAntiAliasingMode(AntiAliasing antiAliasing) {
+        this.antiAliasing = antiAliasing;
+        accumulator.reset();
+        setMultisampling(antiAliasing == AntiAliasing.MULTISAMPLE);
+    }
+
+    public PipelineStatistics getStatistics() {
+        return statistics;
+    }
+
+    public PictureCache getPictureCache() {
+        return pictureCache;
+    }
+
+    public ThumbnailStore getThumbnailStore() {
+        return thumbnailStore;
+    }
+
+    /**
+     * Returns the camera of the scene, to be given to billboards. It is set
+     * at the beginning of every frame.
+     */
+    public Camera getCamera() {
+        return camera;
+    }
 
+    public void addPicture(String name, BufferedImage image) {
+        addPicture(new Picture(name, image));
+    }
+    
+    public void addPicture(Picture picture) {
         int size = -1;
-        Picture picture = new Picture(name, image);
         
         pictures.add(picture);
         size = pictures.size();
 
         if (size == 1) {
-            initQuadsQueue.add(createQuad(INDEX_SELECTED_PICTURE, 0));
+            queueQuad(initQuadsQueue, createQuad(INDEX_SELECTED_PICTURE, 0));
         } else if (size - 1 == selectedPicture + 1) {
-            initQuadsQueue.add(createQuad(INDEX_NEXT_PICTURE, 1));
+            queueQuad(initQuadsQueue, createQuad(INDEX_NEXT_PICTURE, 1));
         } else if (size - 1 == nextPicture + 1) {
-            initQuadsQueue.add(createQuad(INDEX_RIGHT_PICTURE, 2));
+            queueQuad(initQuadsQueue, createQuad(INDEX_RIGHT_PICTURE, 2));
         }
         
         float ratio = picture.getRatio();
@@ -168,7 +288,7 @@ public class PictureViewer extends CompositeGLPanel {
         getActionMap().get(KEY_ACTION_NEXT_PICTURE).setEnabled(selectedPicture < size - 1);
         getActionMap().get(KEY_ACTION_PREVIOUS_PICTURE).setEnabled(selectedPicture > 0);
         
-        repaint();
+        invalidateScene();
     }
     
     public void showSelectedPicture() {
@@ -178,6 +298,22 @@ public class PictureViewer extends CompositeGLPanel {
         
         pictureIsShowing = !pictureIsShowing;
         ((ShowPictureAction) getActionMap().get(KEY_ACTION_SHOW_PICTURE)).toggleName();
+        
+        if (pictureIsShowing) {
+            loadFullPicture();
+        } else {
+            cancelFullPicture();
+            
+            // the full image stays until the preview is decoded
+            Picture picture = pictures.get(selectedPicture);
+            Quad quad = (Quad) renderables.get(INDEX_SELECTED_PICTURE);
+            BufferedImage image = picture.peekImage();
+            if (image != null) {
+                setPreviewImage(quad, picture, image);
+            } else if (quad != null) {
+                loadQuadImage(quad, picture, quad.getTextureImage());
+            }
+        }
 
         animator = new Timer(1000 / 60, new ZoomAnimation());
         animator.start();
@@ -203,8 +339,26 @@ public class PictureViewer extends CompositeGLPanel {
         super.init(drawable);
         GL2 gl = drawable.getGL().getGL2();
 
+        int[] value = new int[1];
+        gl.glGetIntegerv(GL.GL_MAX_TEXTURE_SIZE, value, 0);
+        maxTextureSize = value[0];
+
         initQuads(gl);
     }
+
+    /**
+     * Releases the GL resources of the scene when the context goes away, as
+     * when the panel is removed from its window. Quads create their textures
+     * and buffers again when the next context is initialized, and the
+     * thumbnails are packed again in new atlas pages as they are drawn.
+     */
+    @Override
+    public void dispose(GLAutoDrawable drawable) {
+        GL2 gl = drawable.getGL().getGL2();
+        renderables.dispose(gl);
+        thumbnailAtlas.dispose(gl);
+        super.dispose(drawable);
+    }
     
     private void registerActions() {
         KeyStroke stroke;
@@ -309,44 +463,216 @@ public class PictureViewer extends CompositeGLPanel {
         Picture picture = null;
         picture = pictures.get(pictureNumber);
         
-        if (picture == null || index > renderables.length) {
+        if (picture == null || index > renderables.size()) {
             return null;
         }
 
         float ratio = picture.getRatio();
         int height = (int) (QUAD_WIDTH / ratio);
         
+        // quads are created at the end of slides, on the EDT: when the image
+        // was not prefetched in time the thumbnail, or a solid texture, stands
+        // in for it until it is decoded
+        BufferedImage image = picture.peekImage();
+        boolean placeholder = image == null;
+        if (placeholder) {
+            image = picture.peekThumbnail(THUMBNAIL_SIZE);
+            if (image == null) {
+                image = placeholderImage;
+            }
+        }
         Renderable quad = RenderableFactory.createReflectedQuad(0.0f, 0.0f, 0.0f,
                                                                 QUAD_WIDTH, height,
-                                                                picture.getImage(), null,
+                                                                image, null,
                                                                 picture.getName());
-        renderables[index] = quad;
+        ((Quad) quad).setTextureImage(image,
+                                      placeholder ? null : picture.getTextureKey(image.getWidth()));
+        ((Quad) quad).setTextureCache(textureCache);
+        ((Quad) quad).setStreamer(textureStreamer);
+        ((Quad) quad).setMipmapped(isMipmappedSlot(index));
+        renderables.set(index, quad);
         
+        getSlotPose(index, quad).apply(quad);
         if (index == INDEX_SELECTED_PICTURE) {
             selectedPicture = pictureNumber;
-            
-            quad.setPosition(-7.0f, 0.0f, 0.0f);
-            quad.setRotation(0, 30, 0);
-            
             textImage = generateTextImage(picture);
         } else if (index == INDEX_NEXT_PICTURE) {
             nextPicture = pictureNumber;
-            
-            quad.setScale(0.5f, 0.5f, 0.5f);
-            quad.setPosition(36.0f, -height / 2.0f, 30.0f);
-            quad.setRotation(0, -20, 0);
-        } else if (index == INDEX_RIGHT_PICTURE) {
-            quad.setScale(0.5f, 0.5f, 0.5f);
-            quad.setPosition(196.0f, -height / 2.0f, 30.0f);
-            quad.setRotation(0, -20, 0);
-        } else if (index == INDEX_LEFT_PICTURE) {
-            quad.setPosition(-7.0f - QUAD_WIDTH * 2.0f, 0.0f, 0.0f);
-            quad.setRotation(0, 30, 0);
+        }
+        
+        pinVisiblePictures();
+        if (placeholder) {
+            loadQuadImage((Quad) quad, picture, image);
         }
         
         return quad;
     }
 
+    /**
+     * Returns true when the quads resting in the given slot need mipmaps. The
+     * pictures waiting on the right are drawn at half scale and at an angle,
+     * far smaller than their preview image.
+     */
+    private static boolean isMipmappedSlot(int index) {
+        return index == INDEX_NEXT_PICTURE || index == INDEX_RIGHT_PICTURE;
+    }
+
+    /**
+     * Moves an initialized quad to another slot. Its texture is created
+     * again when the slot needs mipmaps and the quad has none, or the other
+     * way around; the current texture is drawn until then.
+     */
+    private void moveQuad(int index, Renderable quad) {
+        renderables.set(index, quad);
+        if (quad != null && ((Quad) quad).isMipmapped() != isMipmappedSlot(index)) {
+            ((Quad) quad).setMipmapped(isMipmappedSlot(index));
+            reloadQuadsQueue.add(quad);
+        }
+    }
+
+    /**
+     * Pins the images of the displayed pictures and of the next one on each
+     * side, the ones entering the scene at the end of a slide, and decodes
+     * those that are missing in the background.
+     */
+    private void pinVisiblePictures() {
+        List<Picture> visible = new ArrayList<Picture>(renderables.size() + 2);
+        synchronized (pictures) {
+            int first = Math.max(0, selectedPicture - 2);
+            int last = Math.min(pictures.size() - 1, selectedPicture + 3);
+            for (int i = first; i <= last; i++) {
+                visible.add(pictures.get(i));
+            }
+        }
+        pictureCache.setPinned(visible);
+        
+        for (final Picture picture: visible) {
+            if (picture.peekImage() == null) {
+                imageDecoder.execute(new Runnable() {
+                    public void run() {
+                        picture.getImage();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Decodes the image of the picture in the background, then replaces the
+     * placeholder texture of the quad if it is still displayed.
+     */
+    private void loadQuadImage(final Quad quad, final Picture picture,
+                               final BufferedImage placeholder) {
+        imageDecoder.execute(new Runnable() {
+            public void run() {
+                final BufferedImage image = picture.getImage();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (quad.getTextureImage() != placeholder) {
+                            return;
+                        }
+                        for (int i = 0; i < renderables.size(); i++) {
+                            if (renderables.get(i) == quad) {
+                                setPreviewImage(quad, picture, image);
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+    
+    private void loadFullPicture() {
+        cancelFullPicture();
+        
+        final int pictureNumber = selectedPicture;
+        final Picture picture = pictures.get(pictureNumber);
+        if (picture.getSource() == null) {
+            return;
+        }
+        
+        final int maxSize = maxTextureSize;
+        fullImageTask = fullImageLoader.submit(new Runnable() {
+            public void run() {
+                final BufferedImage image;
+                try {
+                    image = picture.readFullImage(maxSize);
+                } catch (IOException e) {
+                    return;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (pictureIsShowing && selectedPicture == pictureNumber) {
+                            // full size images are never compressed, they
+                            // are only shown for their quality
+                            setQuadImage((Quad) renderables.get(INDEX_SELECTED_PICTURE),
+                                         image, null);
+                        }
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Drops the decoding of the full picture, if any, when zooming out.
+     */
+    private void cancelFullPicture() {
+        if (fullImageTask != null) {
+            fullImageTask.cancel(true);
+            fullImageTask = null;
+        }
+    }
+    
+    private void setPreviewImage(Quad quad, Picture picture, BufferedImage image) {
+        if (image != null) {
+            setQuadImage(quad, image, picture.getTextureKey(image.getWidth()));
+        }
+    }
+    
+    private void setQuadImage(Quad quad, BufferedImage image, String textureKey) {
+        if (quad == null || image == null || quad.getTextureImage() == image) {
+            return;
+        }
+        
+        quad.setTextureImage(image, textureKey);
+        queueQuad(reloadQuadsQueue, quad);
+        invalidateScene();
+    }
+
+    /**
+     * Queues a quad to be initialized, once the compressed version of its
+     * texture, if any, has been looked up in the texture cache so that the
+     * render thread never reads it from disk.
+     */
+    private void queueQuad(final Queue<Renderable> queue, final Renderable quad) {
+        final String textureKey = ((Quad) quad).getTextureKey();
+        if (textureCache == null || textureKey == null) {
+            queue.add(quad);
+            return;
+        }
+        
+        textureCache.get(textureKey, new TextureCache.Listener() {
+            public void loaded(String key, final CompressedImage image) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        // a quad whose image changed meanwhile is queued again
+                        if (textureKey.equals(((Quad) quad).getTextureKey())) {
+                            ((Quad) quad).setCompressedImage(image);
+                            queue.add(quad);
+                            invalidateScene();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     private BufferedImage generateTextImage(Picture picture) {
         FontRenderContext context = getFontMetrics(textFont).getFontRenderContext();
         GlyphVector vector = textFont.createGlyphVector(context, picture.getName());
@@ -381,8 +707,10 @@ public class PictureViewer extends CompositeGLPanel {
 
     @Override
     protected void render2DBackground(Graphics g) {
-        // NOTE: with antialiasing on the accum buffer creates a black backround
-        if (!antiAliasing) {
+        // NOTE: the jitter loop of the accum buffer creates a black backround;
+        // multisampling and the progressive mode, which averages alpha as
+        // well, keep the gradient
+        if (antiAliasing != AntiAliasing.ACCUMULATION) {
             float h = getHeight() * 0.55f;
 
             GradientPaint paint = new GradientPaint(0.0f, h, Color.BLACK,
@@ -400,30 +728,18 @@ public class PictureViewer extends CompositeGLPanel {
         Graphics2D g2 = (Graphics2D) g;
         setupForegroundGraphics(g2);
 
-        paintPicturesStrip(g2);
         paintInfo(g2);
     }
     
-    private BufferedImage createGradientMask(int width) {
-        BufferedImage gradient = new BufferedImage(width, 2,
-                                                   BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = gradient.createGraphics();
-        GradientPaint painter = new GradientPaint(0.0f, 0.0f,
-                                                  new Color(1.0f, 1.0f, 1.0f, 1.0f),
-                                                  width / 2.0f, 0.0f,
-                                                  new Color(1.0f, 1.0f, 1.0f, 0.0f));
-        g.setPaint(painter);
-        g.fill(new Rectangle2D.Double(0, 0, width, 2));
+    /**
+     * Draws the pictures strip over the scene, in view coordinates, as one
+     * batch of thumbnails followed by the frames of the selected pictures.
+     */
+    private void paintPicturesStrip(GL2 gl) {
+        int viewWidth = getWidth();
+        int viewHeight = getHeight();
         
-        g.dispose();
-
-        return gradient;
-    }
-
-    private void paintPicturesStrip(Graphics2D g2) {
-        Rectangle clip = g2.getClipBounds();
-        
-        int x = (int) (getWidth() / 2 - (selectedPicture + (next ? 1 : -1) * animFactor) * (THUMB_WIDTH + THUMB_SPACING));
+        int x = (int) (viewWidth / 2 - (selectedPicture + (next ? 1 : -1) * animFactor) * (THUMB_WIDTH + THUMB_SPACING));
         int y = picturesStripHeight / 2;
         int i = 0;
 
@@ -433,10 +749,25 @@ public class PictureViewer extends CompositeGLPanel {
         x -= width / 2;
         x -= (width2 - THUMB_WIDTH) / 2;
 
-        Picture[] picturesArray = new Picture[pictures.size()];
-        picturesArray = pictures.toArray(picturesArray);
+        // the array is reused from frame to frame and only grows
+        int count;
+        synchronized (pictures) {
+            count = pictures.size();
+            if (stripPictures.length < count) {
+                stripPictures = new Picture[Math.max(count, stripPictures.length * 2)];
+            }
+            pictures.toArray(stripPictures);
+        }
+        
+        int firstVisible = -1;
+        int lastVisible = -1;
+        Rectangle selectedFrame = null;
+        Rectangle nextFrame = null;
         
-        for (Picture picture: picturesArray) {
+        thumbnailAtlas.begin(viewWidth, THUMB_WIDTH / 2);
+        
+        while (i < count) {
+            Picture picture = stripPictures[i];
             int picWidth = THUMB_WIDTH;
             if (i == selectedPicture) {
                 picWidth = width;
@@ -445,53 +776,100 @@ public class PictureViewer extends CompositeGLPanel {
                 picWidth = width2;
             }
 
-            if (x > clip.x + clip.width) {
-                return;
+            if (x > viewWidth) {
+                break;
             }
 
-            if (x + picWidth >= clip.x) {
-                BufferedImage thumb = picture.getThumbnail(THUMB_WIDTH * 2);
+            if (x + picWidth >= 0) {
+                if (firstVisible < 0) {
+                    firstVisible = i;
+                }
+                lastVisible = i;
+                
                 float ratio = picture.getRatio();
                 int height = (int) (picWidth / ratio);
                 int y1 = y - height / 2;
     
-                g2.setColor(grayColor);
                 if (i == selectedPicture) {
-                    Graphics2D g2d = (Graphics2D) g2.create();
-                    g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
-                                                                1.0f - (float) animFactor));
-                    g2d.drawRect(x - 1, y1 - 1, picWidth + 1, height + 1);
+                    selectedFrame = selectedFrameBounds;
+                    selectedFrame.setBounds(x - 1, y1 - 1, picWidth + 1, height + 1);
                 } else if ((next && i == nextPicture) ||
                            (!next && i == selectedPicture - 1)) {
-                    Graphics2D g2d = (Graphics2D) g2.create();
-                    g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
-                                                                (float) animFactor));
-                    g2d.drawRect(x - 1, y1 - 1, picWidth + 1, height + 1);
+                    nextFrame = nextFrameBounds;
+                    nextFrame.setBounds(x - 1, y1 - 1, picWidth + 1, height + 1);
                 }
                 
-                g2.drawImage(thumb, x, y1, picWidth, height, null);
-                
-                if (x < picWidth || x + picWidth > getWidth() - picWidth) {
-                    int x1 = 0;
-                    
-                    Graphics2D g2d = (Graphics2D) g2.create();
-                    g2d.setComposite(AlphaComposite.DstOut);
-                    
-                    if (x + picWidth > getWidth() - picWidth) {
-                        double scaleY = (double) height / (double) alphaMask.getHeight();
-                        AffineTransform transform = AffineTransform.getScaleInstance(-1.0, scaleY);
-                        x1 = getWidth();
-                        g2d.translate(x1, y1);
-                        g2d.drawImage(alphaMask, transform, null);
-                    } else {
-                        g2d.drawImage(alphaMask, x1, y1 - 1, picWidth, height + 1, null);
-                    }
-                }
+                thumbnailAtlas.add(gl, picture, picture.peekThumbnail(THUMBNAIL_SIZE),
+                                   x, y1, picWidth, height);
             }
             
             x += picWidth + THUMB_SPACING;
             i++;
         }
+        
+        MatrixState state = MatrixState.get(gl);
+        state.pushProjection();
+        state.setOrtho(gl, 0.0, viewWidth, viewHeight, 0.0, -1.0, 1.0);
+        state.push();
+        state.loadIdentity(gl);
+        gl.glDisable(GL2.GL_DEPTH_TEST);
+        
+        thumbnailAtlas.draw(gl);
+        paintFrame(gl, selectedFrame, 1.0f - (float) animFactor);
+        paintFrame(gl, nextFrame, (float) animFactor);
+        
+        gl.glEnable(GL2.GL_DEPTH_TEST);
+        state.pop(gl);
+        state.popProjection(gl);
+        
+        if (firstVisible >= 0) {
+            requestThumbnails(stripPictures, count, firstVisible, lastVisible);
+        }
+        if (thumbnailAtlas.isPending()) {
+            invalidateScene();
+        }
+    }
+    
+    private void paintFrame(GL2 gl, Rectangle frame, float alpha) {
+        if (frame == null || alpha <= 0.0f) {
+            return;
+        }
+        
+        // lines go through pixel centers, like Java2D outlines
+        float x1 = frame.x + 0.5f;
+        float y1 = frame.y + 0.5f;
+        float x2 = x1 + frame.width;
+        float y2 = y1 + frame.height;
+        
+        gl.glEnable(GL2.GL_BLEND);
+        gl.glBlendFunc(GL2.GL_ONE, GL2.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glColor4f(grayColor.getRed() / 255.0f * alpha,
+                     grayColor.getGreen() / 255.0f * alpha,
+                     grayColor.getBlue() / 255.0f * alpha, alpha);
+        gl.glBegin(GL2.GL_LINE_LOOP);
+        gl.glVertex2f(x1, y1);
+        gl.glVertex2f(x2, y1);
+        gl.glVertex2f(x2, y2);
+        gl.glVertex2f(x1, y2);
+        gl.glEnd();
+        gl.glDisable(GL2.GL_BLEND);
+    }
+    
+    private void requestThumbnails(Picture[] picturesArray, int count,
+                                   int firstVisible, int lastVisible) {
+        // requests are served most recent first so the nearest pictures,
+        // and then the visible ones, are requested last
+        for (int d = THUMB_PREFETCH; d > 0; d--) {
+            if (lastVisible + d < count) {
+                thumbnailLoader.request(picturesArray[lastVisible + d]);
+            }
+            if (firstVisible - d >= 0) {
+                thumbnailLoader.request(picturesArray[firstVisible - d]);
+            }
+        }
+        for (int i = lastVisible; i >= firstVisible; i--) {
+            thumbnailLoader.request(picturesArray[i]);
+        }
     }
 
     private void paintInfo(Graphics2D g2) {
@@ -501,6 +879,8 @@ public class PictureViewer extends CompositeGLPanel {
             g2.drawString("X: " + camPosX, 5, 15);
             g2.drawString("Y: " + camPosY, 5, 30);
             g2.drawString("Z: " + camPosZ, 5, 45);
+            g2.drawString(DirectBufferPool.getShared().toString().trim(), 5, 60);
+            g2.drawString(allocationMeter.toString().trim(), 5, 75);
         }
         
         if (textImage != null) {
@@ -520,43 +900,74 @@ public class PictureViewer extends CompositeGLPanel {
 
     @Override
     protected void render3DScene(final GL2 gl, final GLU glu) {
+        if (allocationMeter != null) {
+            allocationMeter.begin();
+        }
         initScene(gl);
-        initAndDisposeQuads(gl);
-        
-        Renderable scene = new Renderable() {
-            public Point3f getPosition() {
-                return null;
-            }
-        
-            public void render(GL2 gl) {
-                setupCamera(gl, glu);
-                renderItems(gl);
+        boolean changed = initAndDisposeQuads(gl);
+        if (textureStreamer != null) {
+            if (textureStreamer.update(gl)) {
+                invalidateScene();
             }
+            // textures swap as soon as they are streamed
+            changed |= !textureStreamer.isIdle();
+        }
         
-            public void init(GL gl) {
+        if (antiAliasing == AntiAliasing.ACCUMULATION) {
+            GLUtilities.renderAntiAliased(gl, scene, ANTI_ALIASING_SAMPLES);
+        } else if (antiAliasing == AntiAliasing.PROGRESSIVE) {
+            boolean idle = !changed && (animator == null || !animator.isRunning());
+            if (accumulator.render(gl, scene, idle)) {
+                invalidateScene();
             }
-        };
-
-        if (antiAliasing) {
-            GLUtilities.renderAntiAliased(gl, scene, 4);
         } else {
             scene.render(gl);
         }
+        
+        paintPicturesStrip(gl);
+        
+        if (allocationMeter != null) {
+            allocationMeter.end();
+            if (REPORT_ALLOCATIONS &&
+                allocationMeter.getFrameCount() % ALLOCATION_REPORT_FRAMES == 0) {
+                System.out.print(allocationMeter);
+            }
+        }
+    }
+    
+    private final class Scene extends Renderable {
+        public void render(GL2 gl) {
+            setupCamera(gl);
+            renderItems(gl);
+        }
     }
 
     private void initQuads(GL2 gl) {
-        for (Renderable item: renderables) {
-            if (item != null) {
-                item.init(gl);
-            }
-        }
+        renderables.init(gl);
     }
     
-    private void initAndDisposeQuads(final GL2 gl) {
+    /**
+     * Initializes and disposes the queued quads. Returns true when any quad
+     * was, in which case the scene changed.
+     */
+    private boolean initAndDisposeQuads(final GL2 gl) {
+        boolean changed = false;
         while (!initQuadsQueue.isEmpty()) {
             Renderable quad = initQuadsQueue.poll();
             if (quad != null) {
+                long start = System.nanoTime();
+                quad.init(gl);
+                statistics.record(Stage.TEXTURE, System.nanoTime() - start);
+                changed = true;
+            }
+        }
+        
+        while (!reloadQuadsQueue.isEmpty()) {
+            Renderable quad = reloadQuadsQueue.poll();
+            if (quad != null) {
+                // quads keep drawing their previous texture until the new one is ready
                 quad.init(gl);
+                changed = true;
             }
         }
         
@@ -564,54 +975,106 @@ public class PictureViewer extends CompositeGLPanel {
             Renderable quad = disposeQuadsQueue.poll();
             if (quad != null) {
                 quad.dispose(gl);
+                changed = true;
             }
         }
+        return changed;
     }
     
     private void initScene(GL2 gl) {
-        gl.glMatrixMode(GL2.GL_MODELVIEW);
-        gl.glLoadIdentity();
+        MatrixState.get(gl).loadIdentity(gl);
     }
 
-    private void setupCamera(GL2 gl, GLU glu) {
-        glu.gluLookAt(camPosX, camPosY, camPosZ,
+    /**
+     * Sets the camera for this frame. Its basis is computed on the CPU and
+     * shared with whatever renderable needs to face it.
+     */
+    private void setupCamera(GL2 gl) {
+        camera.lookAt(camPosX, camPosY, camPosZ,
                       0.0f, 0.0f, 0.0f,
                       0.0f, 1.0f, 0.0f);
-        gl.glTranslatef(0.0f, -1.0f, 0.0f);
+        camera.translate(0.0f, -1.0f, 0.0f);
+        MatrixState.get(gl).multiply(gl, camera.getViewMatrix());
     }
 
     private void renderItems(GL2 gl) {
-        for (Renderable renderable: renderables) {
-            setAndRender(gl, renderable);
+        // each quad is drawn with its cached model matrix
+        renderables.render(gl);
+    }
+
+    /**
+     * Returns the pose of a quad resting in the given slot.
+     */
+    private static Pose getSlotPose(int index, Renderable quad) {
+        float height = ((Quad) quad).getHeight();
+        switch (index) {
+            case INDEX_LEFT_PICTURE:
+                return new Pose(-7.0f - QUAD_WIDTH * 2.0f, 0.0f, 0.0f, 30.0f, 1.0f);
+            case INDEX_SELECTED_PICTURE:
+                return new Pose(-7.0f, 0.0f, 0.0f, 30.0f, 1.0f);
+            case INDEX_NEXT_PICTURE:
+                return new Pose(36.0f, -height / 2.0f, 30.0f, -20.0f, 0.5f);
+            default:
+                return new Pose(196.0f, -height / 2.0f, 30.0f, -20.0f, 0.5f);
         }
     }
     
-    private void setAndRender(GL2 gl, Renderable renderable) {
-        if (renderable == null) {
-            return;
+    /**
+     * Returns the pose of the selected quad when its picture is shown, or of
+     * the next quad, moved out of the way.
+     */
+    private static Pose getShownPose(int index, Renderable quad) {
+        if (index == INDEX_SELECTED_PICTURE) {
+            return new Pose(0.0f, 0.0f, 30.0f, 0.0f, 1.0f);
         }
+        return new Pose(156.0f, -((Quad) quad).getHeight() / 2.0f, 30.0f, -20.0f, 0.5f);
+    }
+    
+    /**
+     * Moves the quads present when an animation starts from one pose to
+     * another. Quads created during the animation are not moved.
+     */
+    private final class Transitions {
+        private final Renderable[] quads = new Renderable[renderables.size()];
+        private final Pose[] from = new Pose[quads.length];
+        private final Pose[] to = new Pose[quads.length];
         
-        Point3f pos = renderable.getPosition();
-        Point3i rot = renderable.getRotation();
-        Point3f scale = renderable.getScale();
-
-        gl.glPushMatrix();
-        gl.glScalef(scale.x, scale.y, scale.z);
-        gl.glTranslatef(pos.x, pos.y, pos.z);
-        gl.glRotatef(rot.x, 1.0f, 0.0f, 0.0f);
-        gl.glRotatef(rot.y, 0.0f, 1.0f, 0.0f);
-        gl.glRotatef(rot.z, 0.0f, 0.0f, 1.0f);
+        private void add(int index, Pose from, Pose to) {
+            quads[index] = renderables.get(index);
+            this.from[index] = from;
+            this.to[index] = to;
+        }
         
-        renderable.render(gl);
-        gl.glPopMatrix();
+        private void addSlots(int index, int fromSlot, int toSlot) {
+            Renderable quad = renderables.get(index);
+            if (quad != null) {
+                add(index, getSlotPose(fromSlot, quad), getSlotPose(toSlot, quad));
+            }
+        }
+        
+        private void step(double factor) {
+            for (int i = 0; i < quads.length; i++) {
+                if (quads[i] != null) {
+                    Pose.interpolate(from[i], to[i], (float) factor, quads[i]);
+                }
+            }
+        }
     }
 
     private final class ZoomAnimation implements ActionListener {
         private final int ANIM_DELAY = 400;
         private long start;
+        private final Transitions transitions = new Transitions();
 
         private ZoomAnimation() {
             start = System.currentTimeMillis();
+            
+            for (int index = INDEX_SELECTED_PICTURE; index <= INDEX_NEXT_PICTURE; index++) {
+                Renderable quad = renderables.get(index);
+                if (quad != null) {
+                    transitions.add(index, getSlotPose(index, quad), getShownPose(index, quad));
+                }
+            }
         }
 
         public void actionPerformed(ActionEvent e) {
@@ -619,33 +1082,19 @@ public class PictureViewer extends CompositeGLPanel {
             if (elapsed >= ANIM_DELAY) {
                 Timer timer = (Timer) e.getSource();
                 timer.stop();
+                animateQuads(1.0);
             } else {
                 double factor = (double) elapsed / (double) ANIM_DELAY;
                 animateQuads(curve.compute(factor));
             }
-            repaint();
+            invalidateScene();
         }
 
         private void animateQuads(double factor) {
             if (!pictureIsShowing) {
                 factor = 1.0 - factor;
             }
-            
-            Renderable quad = renderables[INDEX_SELECTED_PICTURE];
-            Point3f position = quad.getPosition();
-            
-            quad.setRotation(0, (int) (30.0 * (1.0 - factor)), 0);
-            quad.setPosition((float) (-7.0f * (1.0 - factor)),
-                             position.y,
-                             (float) (30.0 * factor));
-      
-            quad = renderables[INDEX_NEXT_PICTURE];
-            if (quad != null) {
-                position = quad.getPosition();
-                quad.setPosition(36.0f + (float) (120.0f * factor),
-                                 position.y,
-                                 position.z);
-            }
+            transitions.step(factor);
         }
     }
 
@@ -654,11 +1103,23 @@ public class PictureViewer extends CompositeGLPanel {
         
         private final boolean next;
         private long start;
+        private final Transitions transitions = new Transitions();
 
         private SlideAnimation(boolean next) {
             this.next = next;
             start =  System.currentTimeMillis();
             
+            // every quad moves to the slot next to its own
+            if (next) {
+                transitions.addSlots(INDEX_SELECTED_PICTURE, INDEX_SELECTED_PICTURE, INDEX_LEFT_PICTURE);
+                transitions.addSlots(INDEX_NEXT_PICTURE, INDEX_NEXT_PICTURE, INDEX_SELECTED_PICTURE);
+                transitions.addSlots(INDEX_RIGHT_PICTURE, INDEX_RIGHT_PICTURE, INDEX_NEXT_PICTURE);
+            } else {
+                transitions.addSlots(INDEX_LEFT_PICTURE, INDEX_LEFT_PICTURE, INDEX_SELECTED_PICTURE);
+                transitions.addSlots(INDEX_SELECTED_PICTURE, INDEX_SELECTED_PICTURE, INDEX_NEXT_PICTURE);
+                transitions.addSlots(INDEX_NEXT_PICTURE, INDEX_NEXT_PICTURE, INDEX_RIGHT_PICTURE);
+            }
+            
             if (next) {
                 if (nextPicture < pictures.size()) {
                     nextTextImage = generateTextImage(pictures.get(nextPicture));
@@ -680,6 +1141,7 @@ public class PictureViewer extends CompositeGLPanel {
                 Timer timer = (Timer) e.getSource();
                 timer.stop();
                 
+                transitions.step(1.0);
                 if (next) {
                     selectNextPicture();
                 } else {
@@ -698,62 +1160,12 @@ public class PictureViewer extends CompositeGLPanel {
                 double curvedFactor = curve.compute(factor);
                 animFactor = curvedFactor;
                 
-                if (next) {
-                    animateQuadsNext(curvedFactor);
-                } else {
-                    animateQuadsPrevious(1.0 - curvedFactor);
-                }
+                transitions.step(curvedFactor);
                 
                 setTextAlpha(elapsed, factor);
             }
             
-            repaint();
-        }
-
-        private void animateQuadsNext(double factor) {
-            Renderable quad = renderables[INDEX_SELECTED_PICTURE];
-            Point3f position = quad.getPosition();
-            quad.setPosition(-7.0f - QUAD_WIDTH * 2.0f * (float) factor, position.y, position.z);
-            
-            ReflectedQuad reflected = (ReflectedQuad) renderables[INDEX_NEXT_PICTURE];
-            if (reflected != null) {
-                float scale = 0.5f + 0.5f * (float) factor;
-      
-                reflected.setScale(scale, scale, scale);
-                reflected.setRotation(0, (int) (-20.0 + 50.0 * factor), 0);
-                reflected.setPosition((float) (36.0f - 43.0f * factor),
-                                      (float) (-reflected.getHeight() * (1.0f - scale)),
-                                      (float) (30.0 * (1.0 - factor)));
-            }
-            
-            quad = renderables[INDEX_RIGHT_PICTURE];
-            if (quad != null) {
-                position = quad.getPosition();
-                quad.setPosition(36.0f + 160.0f * (float) (1.0 - factor), position.y, position.z);
-            }
-        }
-        
-        private void animateQuadsPrevious(double factor) {
-            ReflectedQuad reflected = (ReflectedQuad) renderables[INDEX_SELECTED_PICTURE];
-            float scale = 0.5f + 0.5f * (float) factor;
-  
-            reflected.setScale(scale, scale, scale);
-            reflected.setRotation(0, (int) (-20.0 + 50.0 * factor), 0);
-            reflected.setPosition((float) (36.0f - 43.0f * factor),
-                                  (float) (-reflected.getHeight() * (1.0f - scale)),
-                                  (float) (30.0 * (1.0 - factor)));
-            
-            Renderable quad = renderables[INDEX_NEXT_PICTURE];
-            if (quad != null) {
-                Point3f position = quad.getPosition();
-                quad.setPosition(36.0f + 160.0f * (float) (1.0 - factor), position.y, position.z);
-            }
-
-            quad = renderables[INDEX_LEFT_PICTURE];
-            if (quad != null) {
-                Point3f position = quad.getPosition();
-                quad.setPosition(-7.0f - QUAD_WIDTH * 2.0f * (float) factor, position.y, position.z);
-            }
+            invalidateScene();
         }
 
         private void setTextAlpha(long elapsed, double factor) {
@@ -775,32 +1187,31 @@ public class PictureViewer extends CompositeGLPanel {
             selectedPicture--;
             nextPicture--;
 
-            if (renderables[INDEX_RIGHT_PICTURE] != null) {
-                disposeQuadsQueue.add(renderables[INDEX_RIGHT_PICTURE]);
+            if (renderables.get(INDEX_RIGHT_PICTURE) != null) {
+                disposeQuadsQueue.add(renderables.get(INDEX_RIGHT_PICTURE));
             }
             
-            Renderable quad = renderables[INDEX_NEXT_PICTURE];
+            Renderable quad = renderables.get(INDEX_NEXT_PICTURE);
             if (quad != null) { 
-                renderables[INDEX_RIGHT_PICTURE] = quad;
-                quad.setScale(0.5f, 0.5f, 0.5f);
-                quad.setPosition(196.0f, -((ReflectedQuad) quad).getHeight() / 2.0f, 30.0f);
-                quad.setRotation(0, -20, 0);
+                moveQuad(INDEX_RIGHT_PICTURE, quad);
+                getSlotPose(INDEX_RIGHT_PICTURE, quad).apply(quad);
             }
             
-            quad = renderables[INDEX_SELECTED_PICTURE];
-            renderables[INDEX_NEXT_PICTURE] = quad;
+            quad = renderables.get(INDEX_SELECTED_PICTURE);
+            moveQuad(INDEX_NEXT_PICTURE, quad);
             
             nextTextImage = generateTextImage(pictures.get(nextPicture));
             
-            quad = renderables[INDEX_LEFT_PICTURE];
-            renderables[INDEX_SELECTED_PICTURE] = quad;
+            quad = renderables.get(INDEX_LEFT_PICTURE);
+            moveQuad(INDEX_SELECTED_PICTURE, quad);
             
             textImage = generateTextImage(pictures.get(selectedPicture));
             
             if (selectedPicture > 0) {
-                initQuadsQueue.add(createQuad(INDEX_LEFT_PICTURE, selectedPicture - 1));
+                queueQuad(initQuadsQueue, createQuad(INDEX_LEFT_PICTURE, selectedPicture - 1));
             } else {
-                renderables[INDEX_LEFT_PICTURE] = null;
+                renderables.set(INDEX_LEFT_PICTURE, null);
+                pinVisiblePictures();
             }
         }
 
@@ -808,32 +1219,32 @@ public class PictureViewer extends CompositeGLPanel {
             selectedPicture++;
             nextPicture++;
             
-            if (renderables[INDEX_LEFT_PICTURE] != null) {
-                disposeQuadsQueue.add(renderables[INDEX_LEFT_PICTURE]);
+            if (renderables.get(INDEX_LEFT_PICTURE) != null) {
+                disposeQuadsQueue.add(renderables.get(INDEX_LEFT_PICTURE));
             }
             
-            Renderable quad = renderables[INDEX_SELECTED_PICTURE];
-            renderables[INDEX_LEFT_PICTURE] = quad;
-            quad.setPosition(-7.0f - QUAD_WIDTH * 2.0f, 0.0f, 0.0f);
-            quad.setRotation(0, 30, 0);
+            Renderable quad = renderables.get(INDEX_SELECTED_PICTURE);
+            moveQuad(INDEX_LEFT_PICTURE, quad);
+            getSlotPose(INDEX_LEFT_PICTURE, quad).apply(quad);
             
-            quad = renderables[INDEX_NEXT_PICTURE];
-            renderables[INDEX_SELECTED_PICTURE] = quad;
+            quad = renderables.get(INDEX_NEXT_PICTURE);
+            moveQuad(INDEX_SELECTED_PICTURE, quad);
             
             textImage = generateTextImage(pictures.get(selectedPicture));
             
             if (nextPicture < pictures.size()) {
-                quad = renderables[INDEX_RIGHT_PICTURE];
-                renderables[INDEX_NEXT_PICTURE] = quad;
+                quad = renderables.get(INDEX_RIGHT_PICTURE);
+                moveQuad(INDEX_NEXT_PICTURE, quad);
                 nextTextImage = generateTextImage(pictures.get(nextPicture));
             } else {
-                renderables[INDEX_NEXT_PICTURE] = null;
+                renderables.set(INDEX_NEXT_PICTURE, null);
             }
             
             if (nextPicture < pictures.size() - 1) {
-                initQuadsQueue.add(createQuad(INDEX_RIGHT_PICTURE, nextPicture + 1));
+                queueQuad(initQuadsQueue, createQuad(INDEX_RIGHT_PICTURE, nextPicture + 1));
             } else {
-                renderables[INDEX_RIGHT_PICTURE] = null;
+                renderables.set(INDEX_RIGHT_PICTURE, null);
+                pinVisiblePictures();
             }
         }
     }
@@ -991,4 +1402,28 @@ public class PictureViewer extends CompositeGLPanel {
             }
         }
     }
+
+    private static BufferedImage createSolidImage(Color color) {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(color);
+        g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g2.dispose();
+        return image;
+    }
+
+    private static final class ImageDecoderThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private ImageDecoderThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
 }
\ No newline at end of file
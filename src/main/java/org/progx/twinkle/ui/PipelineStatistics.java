@@ -0,0 +1,94 @@
+package org.progx.twinkle.ui;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the time spent in each stage of the pictures loading pipeline,
+ * and counts the pictures that could not be loaded. Stages can be recorded
+ * concurrently from any thread.
+ */
+public class PipelineStatistics {
+    public enum Stage {
+        DECODE("decode"),
+        THUMBNAIL("thumbnail"),
+        TEXTURE("texture");
+
+        private final String label;
+
+        private Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final AtomicLong[] times;
+    private final AtomicLong[] counts;
+    private final AtomicLong failures = new AtomicLong();
+
+    public PipelineStatistics() {
+        Stage[] stages = Stage.values();
+        times = new AtomicLong[stages.length];
+        counts = new AtomicLong[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            times[i] = new AtomicLong();
+            counts[i] = new AtomicLong();
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        times[stage.ordinal()].addAndGet(nanos);
+        counts[stage.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * Records a picture dropped from the pipeline because it could not be
+     * read, decoded or scaled.
+     */
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getCount(Stage stage) {
+        return counts[stage.ordinal()].get();
+    }
+
+    /**
+     * Returns the total time spent in the given stage, in milliseconds. When
+     * stages run in parallel this is the sum of the time spent by all threads.
+     */
+    public double getTotalTime(Stage stage) {
+        return times[stage.ordinal()].get() / 1000000.0;
+    }
+
+    public double getAverageTime(Stage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0.0 : getTotalTime(stage) / count;
+    }
+
+    public void reset() {
+        for (int i = 0; i < times.length; i++) {
+            times[i].set(0);
+            counts[i].set(0);
+        }
+        failures.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (Stage stage: Stage.values()) {
+            report.append(String.format("%-10s %5d items, %9.1f ms total, %7.2f ms/item%n",
+                                        stage.getLabel(), getCount(stage),
+                                        getTotalTime(stage), getAverageTime(stage)));
+        }
+        report.append(String.format("%-10s %5d items%n", "failed", getFailureCount()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,357 @@
+package org.progx.twinkle.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.jogamp.opengl.GL2;
+import org.progx.jogl.Texture;
+import org.progx.jogl.util.RectanglePacker;
+
+/**
+ * Draws the thumbnails of the pictures strip with GL. Thumbnails are packed
+ * into a few large textures, the pages, and every thumbnail of a frame is
+ * batched in one vertex array per page, so that drawing the strip takes a
+ * couple of draw calls however many pictures there are.
+ * <p>
+ * Only recently drawn thumbnails stay in the atlas: when a thumbnail does
+ * not fit anymore, the page that was drawn the least recently is emptied.
+ * Thumbnails fade out at the left and right edges of the view, the alpha
+ * being computed per vertex.
+ * <p>
+ * All the methods must be called on the GL thread.
+ */
+class ThumbnailAtlas {
+    private static final int PAGE_SIZE = 1024;
+    private static final int MAX_PAGES = 4;
+    private static final int MAX_UPLOADS = 32;
+    private static final int PLACEHOLDER_SIZE = 4;
+
+    // x, y, s, t, r, g, b, a
+    private static final int VERTEX_SIZE = 8;
+
+    private final Color placeholderColor;
+    private final List<Page> pages = new ArrayList<Page>();
+    private final Map<Object, Entry> entries = new HashMap<Object, Entry>();
+
+    private long frame = 0;
+    private int uploads;
+    private boolean pending;
+
+    private float viewWidth;
+    private float fadeWidth;
+    private final float[] splits = new float[4];
+
+    ThumbnailAtlas(Color placeholderColor) {
+        this.placeholderColor = placeholderColor;
+    }
+
+    /**
+     * Starts a new frame. Thumbnails closer than <code>fadeWidth</code> to the
+     * edges of the view fade out.
+     */
+    void begin(int viewWidth, int fadeWidth) {
+        this.viewWidth = viewWidth;
+        this.fadeWidth = fadeWidth;
+        splits[0] = 0.0f;
+        splits[1] = fadeWidth;
+        splits[2] = viewWidth - fadeWidth;
+        splits[3] = viewWidth;
+        frame++;
+        uploads = 0;
+        pending = false;
+        for (Page page: pages) {
+            page.vertices.clear();
+        }
+    }
+
+    /**
+     * Adds a thumbnail to the frame, at the given location in the view. A
+     * placeholder is drawn when <code>thumbnail</code> is null, or when the
+     * thumbnail cannot be added to the atlas during this frame.
+     */
+    void add(GL2 gl, Object key, BufferedImage thumbnail,
+             float x, float y, float width, float height) {
+        Entry entry = thumbnail == null ? null : getEntry(gl, key, thumbnail);
+        if (entry == null) {
+            Page page = getPlaceholderPage(gl);
+            float s = (page.placeholder.x + PLACEHOLDER_SIZE / 2.0f) / PAGE_SIZE;
+            float t = (page.placeholder.y + PLACEHOLDER_SIZE / 2.0f) / PAGE_SIZE;
+            addQuad(page, x, y, width, height, s, t, s, t);
+        } else {
+            addQuad(entry.page, x, y, width, height, entry.s1, entry.t1, entry.s2, entry.t2);
+        }
+    }
+
+    /**
+     * Returns true when thumbnails could not be added to the atlas during this
+     * frame and were replaced by placeholders, in which case another frame
+     * should be drawn.
+     */
+    boolean isPending() {
+        return pending;
+    }
+
+    private Entry getEntry(GL2 gl, Object key, BufferedImage thumbnail) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.image == thumbnail) {
+            entry.page.lastUsed = frame;
+            return entry;
+        }
+
+        if (uploads >= MAX_UPLOADS) {
+            pending = true;
+            return null;
+        }
+
+        Rectangle bounds = null;
+        Page page = null;
+        for (Page candidate: pages) {
+            bounds = candidate.packer.insert(thumbnail.getWidth(), thumbnail.getHeight());
+            if (bounds != null) {
+                page = candidate;
+                break;
+            }
+        }
+
+        if (page == null) {
+            page = pages.size() < MAX_PAGES ? createPage(gl) : recyclePage();
+            if (page == null) {
+                pending = true;
+                return null;
+            }
+            bounds = page.packer.insert(thumbnail.getWidth(), thumbnail.getHeight());
+            if (bounds == null) {
+                return null;
+            }
+        }
+
+        page.texture.updateSubImage(gl, thumbnail, bounds.x, bounds.y);
+        page.lastUsed = frame;
+        uploads++;
+
+        // samples texel centers only so that neighbors never bleed in
+        entry = new Entry(page, thumbnail,
+                          (bounds.x + 0.5f) / PAGE_SIZE,
+                          (bounds.y + 0.5f) / PAGE_SIZE,
+                          (bounds.x + bounds.width - 0.5f) / PAGE_SIZE,
+                          (bounds.y + bounds.height - 0.5f) / PAGE_SIZE);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private Page createPage(GL2 gl) {
+        Page page = new Page(Texture.getInstance(gl, PAGE_SIZE, PAGE_SIZE, true));
+        page.reservePlaceholder(gl);
+        pages.add(page);
+        return page;
+    }
+
+    /**
+     * Empties the least recently drawn page, unless all of them are in use
+     * in this frame.
+     */
+    private Page recyclePage() {
+        Page oldest = null;
+        for (Page page: pages) {
+            if (page.lastUsed < frame && (oldest == null || page.lastUsed < oldest.lastUsed)) {
+                oldest = page;
+            }
+        }
+        if (oldest == null) {
+            return null;
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().page == oldest) {
+                iterator.remove();
+            }
+        }
+        oldest.packer.clear();
+        oldest.packer.insert(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+        return oldest;
+    }
+
+    private Page getPlaceholderPage(GL2 gl) {
+        if (pages.isEmpty()) {
+            createPage(gl);
+        }
+        return pages.get(0);
+    }
+
+    /**
+     * Adds a textured quad, split where it crosses the fading areas so that
+     * the alpha ramps exactly like the mask it replaces.
+     */
+    private void addQuad(Page page, float x1, float y1, float width, float height,
+                         float s1, float t1, float s2, float t2) {
+        if (width <= 0.0f) {
+            return;
+        }
+
+        float x2 = x1 + width;
+
+        float start = x1;
+        for (int i = 0; i <= splits.length; i++) {
+            float end = i < splits.length ? Math.min(splits[i], x2) : x2;
+            if (end > start) {
+                float u1 = s1 + (s2 - s1) * (start - x1) / width;
+                float u2 = s1 + (s2 - s1) * (end - x1) / width;
+                addVertices(page, start, y1, end, y1 + height, u1, t1, u2, t2);
+                start = end;
+            }
+        }
+    }
+
+    private void addVertices(Page page, float x1, float y1, float x2, float y2,
+                             float s1, float t1, float s2, float t2) {
+        FloatBuffer vertices = page.ensureCapacity(4 * VERTEX_SIZE);
+        float a1 = getAlpha(x1);
+        float a2 = getAlpha(x2);
+        putVertex(vertices, x1, y1, s1, t1, a1);
+        putVertex(vertices, x2, y1, s2, t1, a2);
+        putVertex(vertices, x2, y2, s2, t2, a2);
+        putVertex(vertices, x1, y2, s1, t2, a1);
+    }
+
+    private float getAlpha(float x) {
+        if (fadeWidth <= 0.0f) {
+            return 1.0f;
+        }
+        float distance = Math.min(x, viewWidth - x);
+        return Math.max(0.0f, Math.min(1.0f, distance / fadeWidth));
+    }
+
+    private static void putVertex(FloatBuffer vertices, float x, float y,
+                                  float s, float t, float alpha) {
+        // colors are premultiplied, as are the textures
+        vertices.put(x).put(y).put(s).put(t).put(alpha).put(alpha).put(alpha).put(alpha);
+    }
+
+    /**
+     * Draws the thumbnails added since <code>begin</code>, one batch per
+     * page. Expects a projection mapping the view in pixels.
+     */
+    void draw(GL2 gl) {
+        gl.glEnable(GL2.GL_BLEND);
+        gl.glBlendFunc(GL2.GL_ONE, GL2.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glEnable(GL2.GL_TEXTURE_2D);
+        gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_MODULATE);
+        gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+
+        int stride = VERTEX_SIZE * 4;
+        for (Page page: pages) {
+            FloatBuffer vertices = page.vertices;
+            int count = vertices.position() / VERTEX_SIZE;
+            if (count == 0) {
+                continue;
+            }
+
+            page.texture.bind(gl);
+            vertices.position(0);
+            gl.glVertexPointer(2, GL2.GL_FLOAT, stride, vertices);
+            gl.glTexCoordPointer(2, GL2.GL_FLOAT, stride, page.texCoords);
+            gl.glColorPointer(4, GL2.GL_FLOAT, stride, page.colors);
+            gl.glDrawArrays(GL2.GL_QUADS, 0, count);
+            vertices.position(count * VERTEX_SIZE);
+        }
+
+        gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+        gl.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glDisable(GL2.GL_TEXTURE_2D);
+        gl.glDisable(GL2.GL_BLEND);
+    }
+
+    /**
+     * Deletes the pages and forgets every thumbnail, which are packed again
+     * the next time they are added. Called when the GL context goes away.
+     */
+    void dispose(GL2 gl) {
+        for (Page page: pages) {
+            page.texture.dispose(gl);
+        }
+        pages.clear();
+        entries.clear();
+    }
+
+    private final class Page {
+        private final Texture texture;
+        private final RectanglePacker packer = new RectanglePacker(PAGE_SIZE, PAGE_SIZE, 1);
+        private FloatBuffer vertices;
+        // views of the vertices starting at the texture coordinates and at
+        // the colors, kept to avoid slicing the buffer every frame
+        private FloatBuffer texCoords;
+        private FloatBuffer colors;
+        private Rectangle placeholder;
+        private long lastUsed = 0;
+
+        private Page(Texture texture) {
+            this.texture = texture;
+            setVertices(allocate(256 * 4 * VERTEX_SIZE));
+        }
+
+        private void reservePlaceholder(GL2 gl) {
+            placeholder = packer.insert(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+
+            BufferedImage image = new BufferedImage(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE,
+                                                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            g2.setColor(placeholderColor);
+            g2.fillRect(0, 0, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+            g2.dispose();
+            texture.updateSubImage(gl, image, placeholder.x, placeholder.y);
+        }
+
+        private FloatBuffer ensureCapacity(int floats) {
+            if (vertices.remaining() < floats) {
+                FloatBuffer larger = allocate(vertices.capacity() * 2);
+                vertices.flip();
+                larger.put(vertices);
+                setVertices(larger);
+            }
+            return vertices;
+        }
+
+        private void setVertices(FloatBuffer vertices) {
+            int position = vertices.position();
+            vertices.position(2);
+            texCoords = vertices.slice();
+            vertices.position(4);
+            colors = vertices.slice();
+            vertices.position(position);
+            this.vertices = vertices;
+        }
+
+        private FloatBuffer allocate(int floats) {
+            return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+    }
+
+    private static final class Entry {
+        private final Page page;
+        private final BufferedImage image;
+        private final float s1, t1, s2, t2;
+
+        private Entry(Page page, BufferedImage image, float s1, float t1, float s2, float t2) {
+            this.page = page;
+            this.image = image;
+            this.s1 = s1;
+            this.t1 = t1;
+            this.s2 = s2;
+            this.t2 = t2;
+        }
+    }
+}
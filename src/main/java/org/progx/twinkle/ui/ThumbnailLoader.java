@@ -0,0 +1,89 @@
+package org.progx.twinkle.ui;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates thumbnails on a pool of background threads so that painting
+ * never waits for a picture to be decoded or scaled. Requests are served most
+ * recent first: while scrolling, the pictures that just came into view are
+ * more useful than the ones requested a few frames ago.
+ * <p>
+ * The pool size is set by <code>twinkle.thumbnails.threads</code> and
+ * defaults to half the number of cores.
+ */
+public class ThumbnailLoader {
+    private static final int THREADS =
+        Math.max(1, Integer.getInteger("twinkle.thumbnails.threads",
+                                       Runtime.getRuntime().availableProcessors() / 2));
+
+    private final int thumbWidth;
+    private final Runnable listener;
+    private final ExecutorService workers;
+    private final Set<Picture> pending =
+        Collections.newSetFromMap(new ConcurrentHashMap<Picture, Boolean>());
+    private final Set<Picture> failed =
+        Collections.newSetFromMap(new ConcurrentHashMap<Picture, Boolean>());
+
+    /**
+     * Creates a loader producing thumbnails of the given width.
+     * <code>listener</code> is run, on a worker thread, every time a
+     * thumbnail becomes available.
+     */
+    public ThumbnailLoader(int thumbWidth, Runnable listener) {
+        this.thumbWidth = thumbWidth;
+        this.listener = listener;
+
+        LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(Runnable task) {
+                return offerFirst(task);
+            }
+        };
+        workers = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                                         queue, new WorkerThreadFactory());
+    }
+
+    /**
+     * Schedules the generation of the thumbnail of the picture, unless it is
+     * ready or already scheduled.
+     */
+    public void request(final Picture picture) {
+        if (picture.peekThumbnail(thumbWidth) != null || failed.contains(picture) ||
+            !pending.add(picture)) {
+            return;
+        }
+
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (picture.getThumbnail(thumbWidth) != null) {
+                        listener.run();
+                    } else {
+                        failed.add(picture);
+                    }
+                } finally {
+                    pending.remove(picture);
+                }
+            }
+        });
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Thumbnail Loader " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.progx.twinkle.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * All the successive halvings of a thumbnail, stored in a single array of
+ * ARGB pixels. Each level is exposed as a <code>BufferedImage</code> sharing
+ * that storage so a thumbnail of any width can be served from the nearest
+ * level without scaling or allocating anything.
+ * <p>
+ * Pyramids are built with box and bilinear filters working directly on
+ * pixel arrays. The scratch buffers they need are kept per thread and reused
+ * from one picture to the next.
+ */
+public class ThumbnailPyramid {
+    private static final int MIN_WIDTH = 8;
+
+    private static final DirectColorModel COLOR_MODEL =
+        (DirectColorModel) ColorModel.getRGBdefault();
+
+    private static final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[2][0];
+        }
+    };
+
+    private final int[] pixels;
+    private final BufferedImage[] levels;
+    private final int[] offsets;
+
+    private ThumbnailPyramid(int width, int height) {
+        int count = 1;
+        int size = width * height;
+        for (int w = width / 2, h = height / 2; w >= MIN_WIDTH && h >= 1; w /= 2, h /= 2) {
+            size += w * h;
+            count++;
+        }
+
+        pixels = new int[size];
+        levels = new BufferedImage[count];
+        offsets = new int[count];
+
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offset;
+            levels[i] = createLevel(width, height, offset);
+            offset += width * height;
+            width /= 2;
+            height /= 2;
+        }
+    }
+
+    private BufferedImage createLevel(int width, int height, int offset) {
+        DataBufferInt buffer = new DataBufferInt(pixels, width * height, offset);
+        SinglePixelPackedSampleModel model =
+            new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height,
+                                             COLOR_MODEL.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(model, buffer, null);
+        return new BufferedImage(COLOR_MODEL, raster, false, null);
+    }
+
+    /**
+     * Builds a pyramid whose largest level is <code>image</code>, copied.
+     */
+    public static ThumbnailPyramid create(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        ThumbnailPyramid pyramid = new ThumbnailPyramid(width, height);
+        image.getRGB(0, 0, width, height, pyramid.pixels, 0, width);
+        pyramid.buildLevels();
+        return pyramid;
+    }
+
+    /**
+     * Builds a pyramid whose largest level is <code>image</code> scaled down
+     * to <code>width</code> by <code>height</code>. The source is halved with
+     * a box filter for as long as it stays larger than the requested size,
+     * then resampled bilinearly to the exact size.
+     */
+    public static ThumbnailPyramid create(BufferedImage image, int width, int height) {
+        int[][] buffers = scratch.get();
+
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        int[] work;
+
+        if (srcWidth / 2 >= width && srcHeight / 2 >= height) {
+            // the first halving reads the source two rows at a time
+            int halfWidth = srcWidth / 2;
+            int halfHeight = srcHeight / 2;
+            work = ensureCapacity(buffers, 0, halfWidth * halfHeight);
+            int[] rows = ensureCapacity(buffers, 1, srcWidth * 2);
+            for (int y = 0; y < halfHeight; y++) {
+                readRows(image, y * 2, 2, rows);
+                halve(rows, 0, srcWidth, 2, work, y * halfWidth, halfWidth, 1);
+            }
+            srcWidth = halfWidth;
+            srcHeight = halfHeight;
+        } else {
+            work = ensureCapacity(buffers, 0, srcWidth * srcHeight);
+            readRows(image, 0, srcHeight, work);
+        }
+
+        // halving in place is safe since reads are always ahead of writes
+        while (srcWidth / 2 >= width && srcHeight / 2 >= height) {
+            halve(work, 0, srcWidth, srcHeight, work, 0, srcWidth / 2, srcHeight / 2);
+            srcWidth /= 2;
+            srcHeight /= 2;
+        }
+
+        ThumbnailPyramid pyramid = new ThumbnailPyramid(width, height);
+        resample(work, srcWidth, srcHeight, pyramid.pixels, width, height);
+        pyramid.buildLevels();
+        return pyramid;
+    }
+
+    /**
+     * Reads rows of the image as ARGB pixels. The layouts decoders commonly
+     * produce are read straight from the raster, much faster than
+     * <code>getRGB</code> which converts pixels one by one.
+     */
+    private static void readRows(BufferedImage image, int y, int rows, int[] dst) {
+        int width = image.getWidth();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                byte[] data = ((DataBufferByte) buffer).getData();
+                int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+                for (int row = 0; row < rows; row++) {
+                    int in = buffer.getOffset() + (y + row) * stride;
+                    int out = row * width;
+                    for (int x = 0; x < width; x++, in += 3) {
+                        dst[out + x] = 0xFF000000 | (data[in + 2] & 0xFF) << 16 |
+                                       (data[in + 1] & 0xFF) << 8 | (data[in] & 0xFF);
+                    }
+                }
+                break;
+            }
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int[] data = ((DataBufferInt) buffer).getData();
+                int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int alpha = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                for (int row = 0; row < rows; row++) {
+                    int in = buffer.getOffset() + (y + row) * stride;
+                    int out = row * width;
+                    for (int x = 0; x < width; x++) {
+                        dst[out + x] = data[in + x] | alpha;
+                    }
+                }
+                break;
+            }
+            default:
+                image.getRGB(0, y, width, rows, dst, 0, width);
+        }
+    }
+
+    private static int[] ensureCapacity(int[][] buffers, int index, int size) {
+        if (buffers[index].length < size) {
+            buffers[index] = new int[size];
+        }
+        return buffers[index];
+    }
+
+    private void buildLevels() {
+        for (int i = 1; i < levels.length; i++) {
+            BufferedImage src = levels[i - 1];
+            BufferedImage dst = levels[i];
+            halve(pixels, offsets[i - 1], src.getWidth(), src.getHeight(),
+                  pixels, offsets[i], dst.getWidth(), dst.getHeight());
+        }
+    }
+
+    /**
+     * Returns the largest level.
+     */
+    public BufferedImage getBase() {
+        return levels[0];
+    }
+
+    public int getWidth() {
+        return levels[0].getWidth();
+    }
+
+    /**
+     * Returns the smallest level at least <code>width</code> pixels wide, or
+     * the largest level if none is.
+     */
+    public BufferedImage getLevel(int width) {
+        for (int i = levels.length - 1; i > 0; i--) {
+            if (levels[i].getWidth() >= width) {
+                return levels[i];
+            }
+        }
+        return levels[0];
+    }
+
+    /**
+     * Averages each 2x2 block of the source into one destination pixel.
+     */
+    private static void halve(int[] src, int srcOffset, int srcWidth, int srcHeight,
+                              int[] dst, int dstOffset, int dstWidth, int dstHeight) {
+        for (int y = 0; y < dstHeight; y++) {
+            int row0 = srcOffset + y * 2 * srcWidth;
+            int row1 = y * 2 + 1 < srcHeight ? row0 + srcWidth : row0;
+            int out = dstOffset + y * dstWidth;
+
+            for (int x = 0; x < dstWidth; x++) {
+                int x0 = x * 2;
+                int x1 = x0 + 1 < srcWidth ? x0 + 1 : x0;
+
+                int p0 = src[row0 + x0];
+                int p1 = src[row0 + x1];
+                int p2 = src[row1 + x0];
+                int p3 = src[row1 + x1];
+
+                // sums two channels at once in 16 bits lanes
+                int ag = ((p0 >>> 8) & 0x00FF00FF) + ((p1 >>> 8) & 0x00FF00FF) +
+                         ((p2 >>> 8) & 0x00FF00FF) + ((p3 >>> 8) & 0x00FF00FF);
+                int rb = (p0 & 0x00FF00FF) + (p1 & 0x00FF00FF) +
+                         (p2 & 0x00FF00FF) + (p3 & 0x00FF00FF);
+
+                dst[out + x] = ((((ag + 0x00020002) >>> 2) & 0x00FF00FF) << 8) |
+                               (((rb + 0x00020002) >>> 2) & 0x00FF00FF);
+            }
+        }
+    }
+
+    /**
+     * Scales the source to the destination size with bilinear filtering. The
+     * destination is expected to be less than twice as small as the source.
+     */
+    private static void resample(int[] src, int srcWidth, int srcHeight,
+                                 int[] dst, int dstWidth, int dstHeight) {
+        // 16.16 fixed point steps, sampling at pixel centers
+        long stepX = ((long) srcWidth << 16) / dstWidth;
+        long stepY = ((long) srcHeight << 16) / dstHeight;
+        long maxX = (long) (srcWidth - 1) << 16;
+        long maxY = (long) (srcHeight - 1) << 16;
+
+        for (int y = 0; y < dstHeight; y++) {
+            long sy = Math.min(Math.max(((y * stepY) + (stepY >> 1)) - 0x8000, 0), maxY);
+            int row0 = (int) (sy >> 16) * srcWidth;
+            int row1 = (int) (sy >> 16) < srcHeight - 1 ? row0 + srcWidth : row0;
+            int fy = (int) (sy >> 8) & 0xFF;
+            int out = y * dstWidth;
+
+            for (int x = 0; x < dstWidth; x++) {
+                long sx = Math.min(Math.max(((x * stepX) + (stepX >> 1)) - 0x8000, 0), maxX);
+                int x0 = (int) (sx >> 16);
+                int x1 = x0 < srcWidth - 1 ? x0 + 1 : x0;
+                int fx = (int) (sx >> 8) & 0xFF;
+
+                int top = lerp(src[row0 + x0], src[row0 + x1], fx);
+                int bottom = lerp(src[row1 + x0], src[row1 + x1], fx);
+                dst[out + x] = lerp(top, bottom, fy);
+            }
+        }
+    }
+
+    private static int lerp(int p0, int p1, int fraction) {
+        int inverse = 256 - fraction;
+        int ag = (((p0 >>> 8) & 0x00FF00FF) * inverse + ((p1 >>> 8) & 0x00FF00FF) * fraction) >>> 8;
+        int rb = ((p0 & 0x00FF00FF) * inverse + (p1 & 0x00FF00FF) * fraction) >>> 8;
+        return ((ag & 0x00FF00FF) << 8) | (rb & 0x00FF00FF);
+    }
+}
@@ -0,0 +1,323 @@
+package org.progx.twinkle.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists thumbnails across launches. Thumbnail pixels are appended to a
+ * single pack file which is memory-mapped for reading, in windows so that
+ * the pack can grow past the 2 GB a single mapping can span, and an index
+ * file maps each key to its location in the pack. Keys are made of the
+ * source location, the thumbnail width and the source modification time so
+ * that edited pictures get new thumbnails.
+ * <p>
+ * The store lives in the directory set by <code>twinkle.cache.dir</code>,
+ * <code>.twinkle/cache</code> in the user's home by default. When it cannot
+ * be opened the store silently stays empty.
+ */
+public class ThumbnailStore {
+    public static final File DEFAULT_DIRECTORY =
+        new File(System.getProperty("twinkle.cache.dir",
+                                    System.getProperty("user.home") +
+                                    File.separator + ".twinkle" + File.separator + "cache"));
+
+    private static final String PACK_FILE = "thumbnails.pack";
+    private static final String INDEX_FILE = "thumbnails.idx";
+    // size of the windows the pack is mapped in, well under the 2 GB limit
+    // of a mapping
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final File directory;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean opened = false;
+    private FileChannel pack;
+    // mapped windows of the pack, by offset
+    private final Map<Long, MappedByteBuffer> windows = new HashMap<Long, MappedByteBuffer>();
+    private DataOutputStream index;
+
+    public ThumbnailStore() {
+        this(DEFAULT_DIRECTORY);
+    }
+
+    public ThumbnailStore(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the key identifying the thumbnail of the given width for the
+     * given source and modification time.
+     */
+    public static String getKey(URL source, long lastModified, int width) {
+        return source.toExternalForm() + '@' + width + '#' + lastModified;
+    }
+
+    /**
+     * Returns the modification time of the given source, or 0 when it is not
+     * known. Only the headers of the source are read, with a HEAD request for
+     * HTTP sources.
+     */
+    public static long getLastModified(URL source) {
+        try {
+            if ("file".equals(source.getProtocol())) {
+                return new File(source.toURI()).lastModified();
+            }
+
+            URLConnection connection = source.openConnection();
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection) connection;
+                http.setRequestMethod("HEAD");
+                try {
+                    return http.getLastModified();
+                } finally {
+                    http.disconnect();
+                }
+            }
+            return connection.getLastModified();
+        } catch (IOException e) {
+        } catch (URISyntaxException e) {
+        }
+        return 0;
+    }
+
+    public synchronized boolean contains(String key) {
+        open();
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the stored thumbnail for the given key, or null.
+     */
+    public synchronized Thumbnail get(String key) {
+        open();
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            BufferedImage image = new BufferedImage(entry.width, entry.height,
+                                                    BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer data = read(entry.offset, entry.width * entry.height * 4);
+            data.asIntBuffer().get(pixels);
+
+            return new Thumbnail(image, entry.sourceWidth, entry.sourceHeight);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a buffer positioned on <code>length</code> bytes of the pack
+     * starting at <code>offset</code>. Bytes within a window are read from
+     * its mapping; the rare ranges spanning two windows are copied.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        long start = offset - offset % WINDOW_SIZE;
+        if (offset + length <= start + WINDOW_SIZE) {
+            MappedByteBuffer window = windows.get(start);
+            if (window == null || offset + length > start + window.capacity()) {
+                // windows at the end of the pack are mapped again as it grows
+                long size = Math.min(WINDOW_SIZE, pack.size() - start);
+                window = pack.map(FileChannel.MapMode.READ_ONLY, start, size);
+                windows.put(start, window);
+            }
+            ByteBuffer data = window.duplicate();
+            data.position((int) (offset - start));
+            return data;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(length);
+        while (data.hasRemaining()) {
+            if (pack.read(data, offset + data.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Stores a thumbnail. <code>sourceWidth</code> and
+     * <code>sourceHeight</code> are the dimensions of the picture the
+     * thumbnail was made from.
+     */
+    public synchronized void put(String key, BufferedImage image,
+                                 int sourceWidth, int sourceHeight) {
+        open();
+        if (index == null || entries.containsKey(key)) {
+            return;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        try {
+            ByteBuffer data = ByteBuffer.allocate(width * height * 4);
+            IntBuffer pixels = data.asIntBuffer();
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                pixels.put(row);
+            }
+
+            long offset = pack.size();
+            while (data.hasRemaining()) {
+                pack.write(data, offset + data.position());
+            }
+
+            Entry entry = new Entry(offset, width, height, sourceWidth, sourceHeight);
+            index.writeUTF(key);
+            entry.write(index);
+            index.flush();
+
+            entries.put(key, entry);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        try {
+            pack = new RandomAccessFile(new File(directory, PACK_FILE), "rw").getChannel();
+            readIndex(new File(directory, INDEX_FILE), pack.size());
+            index = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(directory, INDEX_FILE), true)));
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void readIndex(File file, long packSize) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytes);
+            int valid = 0;
+            try {
+                while (bytes.available() > 0) {
+                    String key = in.readUTF();
+                    Entry entry = Entry.read(in);
+                    valid = data.length - bytes.available();
+                    // skips entries whose pixels never made it to the pack
+                    if (entry.offset + (long) entry.width * entry.height * 4 <= packSize) {
+                        entries.put(key, entry);
+                    }
+                }
+            } catch (EOFException e) {
+                // drops a truncated last record so new ones can be appended
+                raf.setLength(valid);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (index != null) {
+                index.close();
+            }
+            if (pack != null) {
+                pack.close();
+            }
+        } catch (IOException e) {
+        }
+        index = null;
+        pack = null;
+        windows.clear();
+        entries.clear();
+    }
+
+    public static final class Thumbnail {
+        private final BufferedImage image;
+        private final int sourceWidth;
+        private final int sourceHeight;
+
+        private Thumbnail(BufferedImage image, int sourceWidth, int sourceHeight) {
+            this.image = image;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+    }
+
+    private static final class Entry {
+        private final long offset;
+        private final int width, height;
+        private final int sourceWidth, sourceHeight;
+
+        private Entry(long offset, int width, int height, int sourceWidth, int sourceHeight) {
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            return new Entry(in.readLong(), in.readInt(), in.readInt(),
+                             in.readInt(), in.readInt());
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(offset);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(sourceWidth);
+            out.writeInt(sourceHeight);
+        }
+    }
+}